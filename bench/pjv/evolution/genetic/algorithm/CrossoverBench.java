@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.SplittableRandom;
+import pjv.evolution.map.MapLoader;
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.RandomStreams;
+
+/**
+ * Benchmark of the crossover operators on a map. For every operator it
+ * reports the throughput, in microseconds per crossover including the
+ * repair, the nodes the repair has to turn on in an offspring, the fitness
+ * the offspring lose against their parents, and the quality of the
+ * evolution with the operator: the average fitness of the population over
+ * the generations, which tells how fast it converges, and the best fitness
+ * of all times after the last one, both averaged over a few seeds.
+ *
+ * The parents are annealed and mutated individuals of the whole map. The
+ * evolution runs on the largest connected component of the map, without
+ * the reductions, so that the operators have the most nodes to work with.
+ *
+ * Run from the "build" folder, with the map and the number of generations
+ * as optional arguments:
+ * <code>java -cp ../classes:../bench-classes
+ * pjv.evolution.genetic.algorithm.CrossoverBench earth 500</code>
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class CrossoverBench {
+
+    /**
+     * Number of parents the crossovers choose from.
+     */
+    private static final int PARENTS = 20;
+
+    /**
+     * Number of crossovers timed.
+     */
+    private static final int CROSSOVERS = 20000;
+
+    /**
+     * Number of seeds the evolution is run with.
+     */
+    private static final int SEEDS = 3;
+
+    /**
+     * Population size of the evolution.
+     */
+    private static final int POPULATION = 100;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args map and number of generations
+     */
+    public static void main(String[] args) {
+	  String map = args.length > 0 ? args[0] : "earth";
+	  int generations = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+	  Graph graph = new MapLoader(map).getGraph();
+
+	  SplittableRandom random = new SplittableRandom(1);
+	  Individual[] parents = new Individual[PARENTS];
+	  for (int i = 0; i < PARENTS; i++) {
+		parents[i] = new Individual(null, graph, false, random.split());
+		Annealer.DEFAULT.anneal(parents[i]);
+		parents[i].mutate(0.02);
+	  }
+
+	  for (Crossover crossover : Crossover.values()) {
+		// twice, the first round warms up
+		double micros = 0;
+		for (int round = 0; round < 2; round++) {
+		    micros = crossoverTime(crossover, parents, random);
+		}
+		double[] evolved = evolve(crossover, graph, generations);
+		System.out.printf("%s %-8s %7.1f us/crossover, repair flips/offspring %5.1f, fitness loss/offspring %7.1f,"
+			  + " average fitness %8.1f, best fitness %8.1f%n", map, crossover, micros,
+			  repairFlips(crossover, parents, random), fitnessLoss(crossover, parents, random),
+			  evolved[0], evolved[1]);
+	  }
+    }
+
+    /**
+     * Times the crossovers of the parents.
+     *
+     * @param crossover the operator
+     * @param parents the parents
+     * @param random the random numbers
+     * @return time of a crossover in microseconds
+     */
+    private static double crossoverTime(Crossover crossover, Individual[] parents, SplittableRandom random) {
+	  Individual one = new Individual(parents[0], random.split());
+	  Individual two = new Individual(parents[1], random.split());
+	  long start = System.nanoTime();
+	  for (int i = 0; i < CROSSOVERS; i++) {
+		Individual first = parents[i % PARENTS];
+		Individual second = parents[(i * 7 + 3) % PARENTS];
+		first.copyInto(one);
+		second.copyInto(two);
+		crossover.cross(first, second, one, two, random);
+	  }
+	  return (System.nanoTime() - start) / 1e3 / CROSSOVERS;
+    }
+
+    /**
+     * Counts the nodes the repair turns on after the genes have been
+     * swapped, the repair only ever turns nodes on.
+     *
+     * @param crossover the operator
+     * @param parents the parents
+     * @param random the random numbers
+     * @return average number of repair flips per offspring
+     */
+    private static double repairFlips(Crossover crossover, Individual[] parents, SplittableRandom random) {
+	  Individual one = new Individual(parents[0], random.split());
+	  Individual two = new Individual(parents[1], random.split());
+	  long flips = 0;
+	  for (int i = 0; i < PARENTS * PARENTS; i++) {
+		Individual first = parents[i / PARENTS];
+		Individual second = parents[i % PARENTS];
+		first.copyInto(one);
+		second.copyInto(two);
+		crossover.swap(first, second, one, two, random);
+		int selected = one.getVertexCover().a + two.getVertexCover().a;
+		one.repair();
+		two.repair();
+		flips += one.getVertexCover().a + two.getVertexCover().a - selected;
+	  }
+	  return flips / (2.0 * PARENTS * PARENTS);
+    }
+
+    /**
+     * Measures how much worse the offspring are than their parents.
+     *
+     * @param crossover the operator
+     * @param parents the parents
+     * @param random the random numbers
+     * @return average fitness lost per offspring
+     */
+    private static double fitnessLoss(Crossover crossover, Individual[] parents, SplittableRandom random) {
+	  Individual one = new Individual(parents[0], random.split());
+	  Individual two = new Individual(parents[1], random.split());
+	  double loss = 0;
+	  for (int i = 0; i < PARENTS * PARENTS; i++) {
+		Individual first = parents[i / PARENTS];
+		Individual second = parents[i % PARENTS];
+		first.copyInto(one);
+		second.copyInto(two);
+		crossover.cross(first, second, one, two, random);
+		loss += first.getFitness() + second.getFitness() - one.getFitness() - two.getFitness();
+	  }
+	  return loss / (2 * PARENTS * PARENTS);
+    }
+
+    /**
+     * Evolves the largest component of the map with the operator.
+     *
+     * @param crossover the operator
+     * @param graph graph of the map
+     * @param generations number of generations
+     * @return the average fitness of the population over the generations
+     * and the best fitness of all times, both averaged over the seeds
+     */
+    private static double[] evolve(Crossover crossover, Graph graph, int generations) {
+	  int[] nodes = null;
+	  for (int[] component : graph.getComponentNodes()) {
+		if (nodes == null || component.length > nodes.length) {
+		    nodes = component;
+		}
+	  }
+	  Graph component = nodes.length == graph.nodesCount() ? graph : graph.inducedSubgraph(nodes);
+
+	  double average = 0;
+	  double best = 0;
+	  for (long seed = 1; seed <= SEEDS; seed++) {
+		Evolution evolution = new Evolution(null, component, generations, POPULATION, 0.01, 0.25, seed);
+		evolution.setCrossover(crossover);
+		ComponentEvolution evolved = new ComponentEvolution(evolution, component, nodes,
+			  new RandomStreams(seed).stream(0));
+		evolved.initialize();
+		for (int g = 0; g < generations; g++) {
+		    evolved.nextGeneration();
+		    average += evolved.getPopulation().getAvgFitness();
+		}
+		best += evolved.getTopIndividual().getFitness();
+	  }
+	  return new double[]{average / SEEDS / generations, best / SEEDS};
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import pjv.evolution.map.MapLoader;
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.NodeOrdering;
+
+/**
+ * Benchmark of the whole evolution: generations per second on a map loaded
+ * with every node ordering, and the number of full fitness evaluations per
+ * generation. The evolution runs without the GUI, with the settings the GUI
+ * starts with and the same seed every time; only the generations are timed,
+ * not the first population.
+ *
+ * Run from the "build" folder, with the map, the number of generations, the
+ * population size and the seed as optional arguments:
+ * <code>java -cp ../classes:../bench-classes
+ * pjv.evolution.genetic.algorithm.GenerationsBench earth 100 100 1</code>
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class GenerationsBench {
+
+    /**
+     * Mutation rate the GUI starts with.
+     */
+    private static final double MUTATION_RATE = 0.01;
+
+    /**
+     * Crossover probability the GUI starts with.
+     */
+    private static final double CROSSOVER_PROBABILITY = 0.25;
+
+    /**
+     * Start of the line the evolution reports the fitness evaluations with.
+     */
+    private static final String EVALUATIONS = "fitness evaluations per generation=";
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args map, generations, population size and seed
+     */
+    public static void main(String[] args) {
+	  String map = args.length > 0 ? args[0] : "earth";
+	  int generations = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+	  int population = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+	  long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+	  // a short run first, so that the orderings are measured compiled
+	  run(new MapLoader(map).getGraph(), Math.max(2, generations / 4), population, seed);
+
+	  for (NodeOrdering ordering : NodeOrdering.values()) {
+		Graph graph = new MapLoader(map, ordering).getGraph();
+		GenerationClock clock = run(graph, generations, population, seed);
+		System.out.printf("%s %-8s %8.2f generations/s, %s fitness evaluations per generation%n", map, ordering,
+			  clock.generationsPerSecond(), clock.evaluationsPerGeneration);
+	  }
+    }
+
+    /**
+     * Runs the evolution with its output discarded.
+     *
+     * @param graph graph of the map
+     * @param generations number of generations
+     * @param population population size
+     * @param seed master seed of the random numbers
+     * @return the times of the generations
+     */
+    private static GenerationClock run(Graph graph, int generations, int population, long seed) {
+	  GenerationClock clock = new GenerationClock();
+	  PrintStream out = System.out;
+	  System.setOut(clock);
+	  try {
+		new Evolution(null, graph, generations, population, MUTATION_RATE, CROSSOVER_PROBABILITY, seed).run();
+	  } finally {
+		System.setOut(out);
+	  }
+	  return clock;
+    }
+
+    /**
+     * Output of the evolution that is thrown away, except for the time every
+     * generation is reported at.
+     */
+    private static final class GenerationClock extends PrintStream {
+
+	  /**
+	   * Time the first generation was reported at.
+	   */
+	  private long first;
+
+	  /**
+	   * Time the last generation was reported at.
+	   */
+	  private long last;
+
+	  /**
+	   * Number of generations reported.
+	   */
+	  private int count = 0;
+
+	  /**
+	   * Number of full fitness evaluations per generation, as the
+	   * evolution reports it at the end.
+	   */
+	  private String evaluationsPerGeneration = "?";
+
+	  /**
+	   * Creates the output.
+	   */
+	  GenerationClock() {
+		super(OutputStream.nullOutputStream());
+	  }
+
+	  @Override
+	  public void println(String line) {
+		if (line.startsWith("gen: ")) {
+		    last = System.nanoTime();
+		    if (count++ == 0) {
+			  first = last;
+		    }
+		} else if (line.startsWith(EVALUATIONS)) {
+		    evaluationsPerGeneration = line.substring(EVALUATIONS.length()).trim();
+		}
+	  }
+
+	  /**
+	   * Gets the rate of the generations between the first and the last
+	   * one reported.
+	   *
+	   * @return generations per second
+	   */
+	  double generationsPerSecond() {
+		return (count - 1) / ((last - first) / 1e9);
+	  }
+    }
+}
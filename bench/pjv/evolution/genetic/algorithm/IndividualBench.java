@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import pjv.evolution.map.MapLoader;
+import pjv.evolution.util.Graph;
+
+/**
+ * Benchmark of the operations on the genotype of an individual, on the whole
+ * graph of every map given: evaluating the fitness from scratch, creating a
+ * random individual, copying, the Hamming distance, mutation and crossover.
+ * Every operation goes over a set of individuals until it has run long
+ * enough, the best of three rounds is reported in microseconds per
+ * operation.
+ *
+ * Run from the "build" folder, with the maps as arguments:
+ * <code>java -cp ../classes:../bench-classes
+ * pjv.evolution.genetic.algorithm.IndividualBench earth "smaller map"</code>
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class IndividualBench {
+
+    /**
+     * Number of individuals the operations go over.
+     */
+    private static final int INDIVIDUALS = 50;
+
+    /**
+     * Shortest time a round takes in nanoseconds.
+     */
+    private static final long ROUND_TIME = 200000000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args maps' directory names in the "maps" directory
+     */
+    public static void main(String[] args) {
+	  String[] maps = args.length > 0 ? args : new String[]{"earth", "smaller map", "smallest map"};
+	  for (String map : maps) {
+		Graph graph = new MapLoader(map).getGraph();
+		SplittableRandom random = new SplittableRandom(1);
+		Individual[] individuals = new Individual[INDIVIDUALS];
+		for (int i = 0; i < INDIVIDUALS; i++) {
+		    individuals[i] = new Individual(null, graph, true, random.split());
+		}
+		Individual one = new Individual(individuals[0], random.split());
+		Individual two = new Individual(individuals[1], random.split());
+		int[] sink = new int[1];
+
+		System.out.println(map + ": " + graph.nodesCount() + " nodes, " + graph.edgesCount() + " edges");
+		report("evaluate", time((i) -> {
+		    sink[0] += (int) Individual.computeFitness(graph, individuals[i]);
+		}));
+		report("create", time((i) -> {
+		    sink[0] += (int) new Individual(null, graph, true, random.split()).getFitness();
+		}));
+		report("deepCopy", time((i) -> {
+		    sink[0] += (int) individuals[i].deepCopy(random).getFitness();
+		}));
+		report("copyInto", time((i) -> {
+		    individuals[i].copyInto(one);
+		}));
+		report("hamming", time((i) -> {
+		    sink[0] += individuals[i].getHammingDistance(individuals[(i + 1) % INDIVIDUALS]);
+		}));
+		report("mutate", time((i) -> {
+		    individuals[i].copyInto(one);
+		    one.mutate(0.01);
+		}));
+		report("crossover", time((i) -> {
+		    Individual first = individuals[i];
+		    Individual second = individuals[(i + 1) % INDIVIDUALS];
+		    first.copyInto(one);
+		    second.copyInto(two);
+		    Crossover.SEGMENTS.cross(first, second, one, two, random);
+		}));
+		if (sink[0] == 42) {
+		    // keeps the results alive
+		    System.out.println();
+		}
+	  }
+    }
+
+    /**
+     * Times an operation over all the individuals.
+     *
+     * @param operation the operation on the individual of the given index
+     * @return the best time of an operation in nanoseconds
+     */
+    private static double time(IntConsumer operation) {
+	  double best = Double.MAX_VALUE;
+	  for (int round = 0; round < 3; round++) {
+		long operations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+		    for (int i = 0; i < INDIVIDUALS; i++) {
+			  operation.accept(i);
+		    }
+		    operations += INDIVIDUALS;
+		    elapsed = System.nanoTime() - start;
+		} while (elapsed < ROUND_TIME);
+		best = Math.min(best, elapsed / (double) operations);
+	  }
+	  return best;
+    }
+
+    /**
+     * Prints the time of an operation.
+     *
+     * @param operation name of the operation
+     * @param nanos time of an operation in nanoseconds
+     */
+    private static void report(String operation, double nanos) {
+	  System.out.printf("  %-10s %10.2f us%n", operation, nanos / 1000);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import pjv.evolution.util.NodeOrdering;
+
+/**
+ * Benchmark of the parsing of the map text files, every
+ * <code>MapLoader.Parsing</code> on the same map. The binary file and the
+ * cache are left out, so only the parsing is timed; the best of the
+ * repetitions is reported, after one load with each parsing to warm up.
+ *
+ * A map big enough to tell the parsings apart can be generated with
+ * <code>MapGenerator</code>, e.g. 1M nodes and 10M edges:
+ * <code>MapGenerator random synthetic 1000000 20</code>. Run from the
+ * "build" folder, with the map and the number of repetitions as optional
+ * arguments:
+ * <code>java -cp ../classes:../bench-classes pjv.evolution.map.LoadBench
+ * synthetic 5</code>
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class LoadBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args map and number of repetitions
+     */
+    public static void main(String[] args) {
+	  String map = args.length > 0 ? args[0] : "earth";
+	  int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+	  for (MapLoader.Parsing parsing : MapLoader.Parsing.values()) {
+		load(map, parsing);
+	  }
+	  for (MapLoader.Parsing parsing : MapLoader.Parsing.values()) {
+		long best = Long.MAX_VALUE;
+		MapLoader loader = null;
+		for (int i = 0; i < repetitions; i++) {
+		    long start = System.nanoTime();
+		    loader = load(map, parsing);
+		    best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("%s %-9s %9.1f ms, %d nodes, %d edges%n", map, parsing, best / 1e6,
+			  loader.getGraph().nodesCount(), loader.getGraph().edgesCount());
+	  }
+    }
+
+    /**
+     * Parses the map's text files, without the binary file and the cache.
+     *
+     * @param map map's directory name in the "maps" directory
+     * @param parsing how to parse the text files
+     * @return the loader
+     */
+    private static MapLoader load(String map, MapLoader.Parsing parsing) {
+	  return new MapLoader(map, NodeOrdering.NONE, parsing, null, false);
+    }
+}
@@ -23,7 +23,7 @@
  */
 package pjv.evolution;
 
-import pjv.evolution.genetic.AbstractIndividual;
+import pjv.evolution.genetic.VertexCover;
 
 /**
  * Interface that represents all the GUI controlling methods we can call from
@@ -75,7 +75,7 @@ public interface GuiCommunication {
      *
      * @param individual usually the best individual from a population
      */
-    public void redrawMap(AbstractIndividual individual);
+    public void redrawMap(VertexCover individual);
 
     /**
      * Show or hide the information panel that the first population in evolution
@@ -25,10 +25,14 @@ package pjv.evolution;
 
 import java.net.URL;
 import java.util.Arrays;
+import java.util.List;
 import java.util.ResourceBundle;
+import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.canvas.Canvas;
@@ -43,12 +47,13 @@ import javafx.scene.control.Slider;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
-import pjv.evolution.genetic.AbstractIndividual;
+import pjv.evolution.genetic.VertexCover;
 import pjv.evolution.genetic.algorithm.Evolution;
+import pjv.evolution.map.MapCatalog;
 import pjv.evolution.map.MapLoader;
 import pjv.evolution.map.MapsBrowser;
-import pjv.evolution.util.Edge;
-import pjv.evolution.util.StateSpace;
+import pjv.evolution.util.NodeOrdering;
+import pjv.evolution.util.Graph;
 
 /**
  * The main and only controller representing GUI for the genetic algorithm. This
@@ -71,6 +76,24 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
     @FXML
     private AnchorPane firstPopulationPanel;
 
+    /**
+     * By default hidden Panel, which we show while a map is being loaded.
+     */
+    @FXML
+    private AnchorPane mapLoadingPanel;
+
+    /**
+     * Progress of the map being loaded.
+     */
+    @FXML
+    private ProgressBar mapLoadingBar;
+
+    /**
+     * Bytes read, nodes and edges parsed of the map being loaded.
+     */
+    @FXML
+    private Text mapLoadingStatus;
+
     /**
      * Number of generations already computed.
      */
@@ -198,15 +221,28 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
     Thread evo;
 
     /**
-     * A class that loads the map into State Space.
+     * A class that loads the map, holds the graph of the selected map. It is
+     * replaced only once a newly selected map is loaded completely.
      */
     private MapLoader map;
 
+    /**
+     * Background loading of the selected map, <code>null</code> if no map is
+     * being loaded.
+     */
+    private Task<MapLoader> mapLoading;
+
     /**
      * List of available maps.
      */
     private final ObservableList<String> mapItems = FXCollections.observableArrayList();
 
+    /**
+     * Set while the list of maps is being brought up to date, so that the
+     * selection moving along with the list does not load a map.
+     */
+    private boolean updatingMapItems = false;
+
     /**
      * Slices for vertex cover pie chart.
      */
@@ -241,8 +277,11 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
      */
     @Override
     public void initialize(URL url, ResourceBundle rb) {
-	  // add all found maps to the select box
+	  // add all found maps to the select box and follow the maps directory
 	  mapItems.addAll(Arrays.asList(MapsBrowser.listAvailableMaps()));
+	  MapCatalog.getDefault().addListener((catalog) -> {
+		Platform.runLater(this::updateMapItems);
+	  });
 
 	  // add individual lines to the fitness line chart
 	  BestFitnessLine = new XYChart.Series();
@@ -257,8 +296,7 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
 	  // fill the select map box and set the selected item to the first item in the list
 	  mapSelect.setItems(mapItems);
 	  mapSelect.setValue(mapItems.get(0));
-	  map = new MapLoader(mapSelect.getValue());
-	  drawMap();
+	  loadMap(mapSelect.getValue());
 
 	  // listener for change in the generation size slider
 	  generationSizeSlider.valueProperty().addListener(
@@ -287,11 +325,95 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
 	  // listner for change in the map select box
 	  mapSelect.getSelectionModel().selectedIndexProperty().addListener(
 		    (ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> {
-			  map = new MapLoader(mapItems.get((int) newValue));
-			  drawMap();
+			  if ((int) newValue >= 0 && !updatingMapItems) {
+				loadMap(mapItems.get((int) newValue));
+			  }
 		    });
     }
 
+    /**
+     * Brings the select box up to date with the map catalog. New maps are
+     * added, removed ones are dropped unless they are selected. The selected
+     * map stays selected by its name, wherever it moves in the list, and is
+     * not loaded again.
+     */
+    private void updateMapItems() {
+	  String selected = mapSelect.getValue();
+	  List<String> available = Arrays.asList(MapsBrowser.listAvailableMaps());
+	  updatingMapItems = true;
+	  try {
+		mapItems.removeIf((item) -> !available.contains(item) && !item.equals(selected));
+		for (int i = 0; i < available.size(); i++) {
+		    if (!mapItems.contains(available.get(i))) {
+			  mapItems.add(Math.min(i, mapItems.size()), available.get(i));
+		    }
+		}
+		mapSelect.setValue(selected);
+	  } finally {
+		updatingMapItems = false;
+	  }
+    }
+
+    /**
+     * Loads a map on a background thread, showing the progress in the GUI.
+     * The map is swapped in and drawn once it is loaded completely. Loading of
+     * a map that has been selected before is cancelled.
+     *
+     * @param dir map's directory name in the "maps" directory
+     */
+    private void loadMap(String dir) {
+	  if (mapLoading != null) {
+		mapLoading.cancel();
+	  }
+
+	  Task<MapLoader> task = new Task<MapLoader>() {
+		@Override
+		protected MapLoader call() {
+		    return new MapLoader(dir, NodeOrdering.HILBERT, MapLoader.Parsing.STREAMING,
+				(bytesRead, bytesTotal, nodesParsed, edgesParsed) -> {
+				    updateProgress(bytesRead, bytesTotal);
+				    updateMessage(String.format("%.1f / %.1f MB read, %d nodes, %d edges",
+						bytesRead / 1048576.0, bytesTotal / 1048576.0, nodesParsed, edgesParsed));
+				});
+		}
+	  };
+	  task.setOnSucceeded((WorkerStateEvent event) -> {
+		if (task == mapLoading) {
+		    map = task.getValue();
+		    mapLoadingFinished();
+		    drawMap();
+		}
+	  });
+	  task.setOnFailed((WorkerStateEvent event) -> {
+		if (task == mapLoading) {
+		    System.err.println("Map " + dir + " could not be loaded: " + task.getException());
+		    mapLoadingFinished();
+		}
+	  });
+
+	  mapLoading = task;
+	  mapLoadingBar.progressProperty().bind(task.progressProperty());
+	  mapLoadingStatus.textProperty().bind(task.messageProperty());
+	  mapLoadingPanel.setVisible(true);
+	  start.setDisable(true);
+
+	  Thread loader = new Thread(task);
+	  loader.setDaemon(true);
+	  loader.start();
+    }
+
+    /**
+     * Hides the map loading panel once the selected map is loaded or has
+     * failed to load.
+     */
+    private void mapLoadingFinished() {
+	  mapLoading = null;
+	  mapLoadingBar.progressProperty().unbind();
+	  mapLoadingStatus.textProperty().unbind();
+	  mapLoadingPanel.setVisible(false);
+	  start.setDisable(map == null);
+    }
+
     /**
      * This method is called when the "start" button is pressed.
      */
@@ -308,7 +430,7 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
 	  double cp = Double.parseDouble(crossProb) / 100;
 
 	  // start the evolution in a separate thread
-	  Evolution evolution = new Evolution(this, gs, ps, mr, cp);
+	  Evolution evolution = new Evolution(this, map.getGraph(), gs, ps, mr, cp);
 	  evo = new Thread(evolution);
 	  evo.setDaemon(true);
 	  evo.start();
@@ -348,8 +470,8 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
 
     @Override
     public void refreshVertexCover(int total, int enabled) {
-	  // compute the current percentage of nodes enabled
-	  double current = (double) Double.parseDouble(new java.text.DecimalFormat("0.000").format(((double) enabled / (double) total) * 100));
+	  // compute the current percentage of nodes enabled, none of an empty map
+	  double current = total == 0 ? 0 : (double) Double.parseDouble(new java.text.DecimalFormat("0.000").format(((double) enabled / (double) total) * 100));
 
 	  vertexCover.setText(Double.toString(current) + "%");
 
@@ -380,101 +502,76 @@ public class PJVEvolutionController implements Initializable, GuiCommunication {
     }
 
     @Override
-    public void redrawMap(AbstractIndividual individual) {
-	  double rightSideLimit = 740;
-	  double lowestPoint = 569;
-	  mapCanvas.setHeight(lowestPoint);
-	  mapCanvas.setWidth(rightSideLimit);
-
-	  GraphicsContext gc = mapCanvas.getGraphicsContext2D();
-	  gc.clearRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight()); // CLEARING THE CANVAS
-
-	  for (Edge edge : StateSpace.getEdges()) {
-		double pointXA = StateSpace.getNode(edge.getFromId()).getPointX();
-		double pointYA = StateSpace.getNode(edge.getFromId()).getPointY();
-		double pointXB = StateSpace.getNode(edge.getToId()).getPointX();
-		double pointYB = StateSpace.getNode(edge.getToId()).getPointY();
-
-		if (individual.isNodeSelected(edge.getFromId()) || individual.isNodeSelected(edge.getToId())) {
-		    gc.setStroke(Color.GREENYELLOW);
-		} else {
-		    gc.setStroke(Color.ORANGE);
-		}
-		gc.strokeLine(pointXA, pointYA, pointXB, pointYB);
-
-		if (pointYA > lowestPoint) {
-		    lowestPoint = pointYA;
-		    mapCanvas.setHeight(lowestPoint + 20);
-		}
-		if (pointXA > rightSideLimit) {
-		    rightSideLimit = pointXA;
-		    mapCanvas.setWidth(rightSideLimit + 20);
-		}
-		if (individual.isNodeSelected(edge.getFromId())) {
-		    gc.setFill(Color.ORANGERED);
-		} else {
-		    gc.setFill(Color.BLUE);
-		}
-		gc.fillOval(pointXA - 2, pointYA - 2, 4, 4);
-
-		if (pointYB > lowestPoint) {
-		    lowestPoint = pointYA;
-		    mapCanvas.setHeight(lowestPoint + 20);
-		}
-		if (pointXB > rightSideLimit) {
-		    rightSideLimit = pointXB;
-		    mapCanvas.setWidth(rightSideLimit + 20);
-		}
-		if (individual.isNodeSelected(edge.getToId())) {
-		    gc.setFill(Color.ORANGERED);
-		} else {
-		    gc.setFill(Color.BLUE);
-		}
-		gc.fillOval(pointXB - 2, pointYB - 2, 4, 4);
-	  }
+    public void redrawMap(VertexCover individual) {
+	  paintMap(individual.getGraph(), individual);
     }
 
     /**
      * Draw on the map canvas according to which map is selected.
      */
     public void drawMap() {
+	  paintMap(map.getGraph(), null);
+    }
+
+    /**
+     * Draw the edges and nodes of the map on the canvas. Canvas grows with the
+     * map, but it is never smaller than its default size.
+     *
+     * @param graph graph of the map to draw
+     * @param individual individual whose vertex cover is highlighted, or
+     * <code>null</code> to draw the map only
+     */
+    private void paintMap(Graph graph, VertexCover individual) {
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+
 	  double rightSideLimit = 740;
 	  double lowestPoint = 569;
+	  for (int u = 0; u < graph.nodesCount(); u++) {
+		if (offsets[u] != offsets[u + 1]) {
+		    rightSideLimit = Math.max(rightSideLimit, graph.getPointX(u) + 20);
+		    lowestPoint = Math.max(lowestPoint, graph.getPointY(u) + 20);
+		}
+	  }
 	  mapCanvas.setHeight(lowestPoint);
 	  mapCanvas.setWidth(rightSideLimit);
 
 	  GraphicsContext gc = mapCanvas.getGraphicsContext2D();
 	  gc.clearRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight()); // CLEARING THE CANVAS
 
-	  gc.setFill(Color.BLUE);
+	  // every edge once, from its endpoint with lower id
 	  gc.setStroke(Color.ORANGE);
-	  for (Edge edge : StateSpace.getEdges()) {
-		double pointXA = StateSpace.getNode(edge.getFromId()).getPointX();
-		double pointYA = StateSpace.getNode(edge.getFromId()).getPointY();
-		double pointXB = StateSpace.getNode(edge.getToId()).getPointX();
-		double pointYB = StateSpace.getNode(edge.getToId()).getPointY();
-
-		gc.strokeLine(pointXA, pointYA, pointXB, pointYB);
-
-		if (pointYA > lowestPoint) {
-		    lowestPoint = pointYA;
-		    mapCanvas.setHeight(lowestPoint + 20);
-		}
-		if (pointXA > rightSideLimit) {
-		    rightSideLimit = pointXA;
-		    mapCanvas.setWidth(rightSideLimit + 20);
+	  for (int u = 0; u < graph.nodesCount(); u++) {
+		for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+		    int v = neighbors[k];
+		    if (v < u) {
+			  continue;
+		    }
+		    if (individual != null) {
+			  if (individual.isNodeSelected(u) || individual.isNodeSelected(v)) {
+				gc.setStroke(Color.GREENYELLOW);
+			  } else {
+				gc.setStroke(Color.ORANGE);
+			  }
+		    }
+		    gc.strokeLine(graph.getPointX(u), graph.getPointY(u), graph.getPointX(v), graph.getPointY(v));
 		}
-		gc.fillOval(pointXA - 2, pointYA - 2, 4, 4);
+	  }
 
-		if (pointYB > lowestPoint) {
-		    lowestPoint = pointYA;
-		    mapCanvas.setHeight(lowestPoint + 20);
+	  // nodes without edges are not part of any road, skip them
+	  gc.setFill(Color.BLUE);
+	  for (int u = 0; u < graph.nodesCount(); u++) {
+		if (offsets[u] == offsets[u + 1]) {
+		    continue;
 		}
-		if (pointXB > rightSideLimit) {
-		    rightSideLimit = pointXB;
-		    mapCanvas.setWidth(rightSideLimit + 20);
+		if (individual != null) {
+		    if (individual.isNodeSelected(u)) {
+			  gc.setFill(Color.ORANGERED);
+		    } else {
+			  gc.setFill(Color.BLUE);
+		    }
 		}
-		gc.fillOval(pointXB - 2, pointYB - 2, 4, 4);
+		gc.fillOval(graph.getPointX(u) - 2, graph.getPointY(u) - 2, 4, 4);
 	  }
     }
 
@@ -24,6 +24,7 @@
 package pjv.evolution.genetic;
 
 import pjv.evolution.PJVEvolutionController;
+import pjv.evolution.util.Graph;
 
 /**
  * Abstract superclass for evolutionary algorithm. This class is to be inherited
@@ -59,6 +60,20 @@ public abstract class AbstractEvolution<Individual extends AbstractIndividual> i
      */
     protected PJVEvolutionController context;
 
+    /**
+     * Graph of the map the evolution runs on.
+     */
+    protected Graph graph;
+
+    /**
+     * Gets the graph of the map the evolution runs on.
+     *
+     * @return the graph
+     */
+    public Graph getGraph() {
+	  return graph;
+    }
+
     /**
      * Gets the number of individuals in the population used by the evolutionary
      * algorithm.
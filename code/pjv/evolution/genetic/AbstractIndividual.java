@@ -23,25 +23,18 @@
  */
 package pjv.evolution.genetic;
 
+import java.util.SplittableRandom;
 import pjv.evolution.util.Pair;
 
 /**
  * Abstract class for individuals in evolutionary algorithm. It defines the
  * genotype, among with related operations such as the mutation and the
- * crossover, as well as computing fitness.
+ * crossover, as well as computing fitness. The fitness must be computed
+ * before the individual is read as a <code>VertexCover</code>.
  *
  * @author Tomas Barton (modified by Jan Havlůj {@literal <jan@havluj.eu>})
  */
-public abstract class AbstractIndividual implements Comparable<AbstractIndividual> {
-
-    /**
-     * Gets the fitness value of the individual. Make sure
-     * <code>computeFitness</code> is always invoked prior to getting the
-     * fitness value.
-     *
-     * @return The fitness value of the current individual
-     */
-    public abstract double getFitness();
+public abstract class AbstractIndividual implements VertexCover, Comparable<AbstractIndividual> {
 
     /**
      * Evaluates the value of the fitness function for the individual. After the
@@ -50,24 +43,16 @@ public abstract class AbstractIndividual implements Comparable<AbstractIndividua
      */
     public abstract void computeFitness();
 
-    /**
-     * Determines whether a graph node of given index (starting from 0) is part
-     * of the vertex cover encoded by the individual.
-     *
-     * @param j Index of the node in the graph.
-     * @return <code>true</code> if the <code>j</code>-th node is part of the
-     * vertex cover, <code>false</code> if not
-     */
-    public abstract boolean isNodeSelected(int j);
-
     /**
      * Creates a deep copy of the current individual, i.e. a new individual with
      * the same internal data. This is necessary for genetic operations like
      * mutation, crossover, etc.
      *
+     * @param random random numbers of the copy, the ones of the current
+     * individual are left alone
      * @return A new individual identical to the current
      */
-    public abstract AbstractIndividual deepCopy();
+    public abstract AbstractIndividual deepCopy(SplittableRandom random);
 
     /**
      * Crosses the current individual over with other individual given as a
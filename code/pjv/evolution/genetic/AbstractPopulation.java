@@ -24,9 +24,8 @@
 package pjv.evolution.genetic;
 
 import java.util.Arrays;
-import pjv.evolution.util.Edge;
+import pjv.evolution.util.Graph;
 import pjv.evolution.util.Pair;
-import pjv.evolution.util.StateSpace;
 
 /**
  * Population of individuals used by the evolutionary algorithm.
@@ -40,15 +39,21 @@ public class AbstractPopulation {
      */
     protected AbstractIndividual[] individuals = null;
 
+    /**
+     * Graph of the map the individuals encode.
+     */
+    protected Graph graph;
+
     /**
      * Average fitness in the population.
      */
     protected double avgFitness = 0;
 
     /**
-     * Best fitness in the population.
+     * Best fitness in the population. The fitness of a reduced map can be
+     * negative, so there is no best one until the fitness is averaged.
      */
-    private double bestFitness = 0;
+    private double bestFitness = Double.NEGATIVE_INFINITY;
 
     /**
      * Computes an average fitness of all the individuals in the population,
@@ -93,24 +98,7 @@ public class AbstractPopulation {
      * @return <code>pair</code> of two integers
      */
     public Pair getVertexCover(AbstractIndividual individual) {
-	  Pair<Integer, Integer> pair = new Pair<>();
-	  int activeNodeCounter = 0;
-	  int notCoveredEdgesCount = 0;
-	  for (int i = 0; i < StateSpace.nodesCount(); i++) {
-		if (individual.isNodeSelected(i)) {
-		    activeNodeCounter++;
-		} else {
-		    for (Edge edge : StateSpace.getNode(i).getEdges()) {
-			  if (!individual.isNodeSelected(edge.getToId())) {
-				notCoveredEdgesCount++;
-			  }
-		    }
-		}
-	  }
-	  pair.a = activeNodeCounter;
-	  pair.b = notCoveredEdgesCount;
-
-	  return pair;
+	  return individual.getVertexCover();
     }
 
     /**
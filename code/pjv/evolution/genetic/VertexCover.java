@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic;
+
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.Pair;
+
+/**
+ * Read-only view of a vertex cover of a graph, all that is needed to show or
+ * print a solution. Individuals are vertex covers that can also be evolved,
+ * a cover put together from solved parts of the map is only a view.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public interface VertexCover {
+
+    /**
+     * Gets the fitness value of the cover.
+     *
+     * @return The fitness value of the cover
+     */
+    double getFitness();
+
+    /**
+     * Determines whether a graph node of given index (starting from 0) is part
+     * of the vertex cover.
+     *
+     * @param j Index of the node in the graph.
+     * @return <code>true</code> if the <code>j</code>-th node is part of the
+     * vertex cover, <code>false</code> if not
+     */
+    boolean isNodeSelected(int j);
+
+    /**
+     * Gets the graph whose nodes the cover selects.
+     *
+     * @return the graph of the cover
+     */
+    Graph getGraph();
+
+    /**
+     * Returns a <code>pair</code> of two integers. The first one is a number of
+     * nodes that are activated and the second one is a number of how many edges
+     * are not covered.
+     *
+     * @return <code>pair</code> of two integers
+     */
+    default Pair<Integer, Integer> getVertexCover() {
+	  Pair<Integer, Integer> pair = new Pair<>();
+	  Graph graph = getGraph();
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  int activeNodeCounter = 0;
+	  int notCoveredEdgesCount = 0;
+	  for (int i = 0; i < graph.nodesCount(); i++) {
+		if (isNodeSelected(i)) {
+		    activeNodeCounter++;
+		} else {
+		    // count every edge only once, from its endpoint with lower id
+		    for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+			  if (neighbors[k] >= i && !isNodeSelected(neighbors[k])) {
+				notCoveredEdgesCount++;
+			  }
+		    }
+		}
+	  }
+	  pair.a = activeNodeCounter;
+	  pair.b = notCoveredEdgesCount;
+
+	  return pair;
+    }
+}
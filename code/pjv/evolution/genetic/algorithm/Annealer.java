@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.SplittableRandom;
+import pjv.evolution.util.Graph;
+
+/**
+ * Simulated annealing that seeds the first population. A move flips both
+ * endpoints of a random edge and repairs the cover, in place; the fitness is
+ * updated by the flips themselves, and a rejected move is undone by flipping
+ * the bits of the same nodes back and restoring the counts behind the
+ * fitness, without looking at their edges again. Nothing is copied per
+ * move, the best individual is only saved when the annealing is about to
+ * leave it.
+ *
+ * The temperature falls from the start to the end temperature along the
+ * cooling schedule, over the given number of steps or within the time
+ * budget, whichever runs out first.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class Annealer {
+
+    /**
+     * How the temperature falls from the start to the end temperature.
+     */
+    public enum Cooling {
+
+	  /**
+	   * The temperature is multiplied by the same factor at every step.
+	   */
+	  GEOMETRIC {
+		@Override
+		double temperature(double start, double end, double progress) {
+		    return start * Math.pow(end / start, progress);
+		}
+	  },
+	  /**
+	   * The temperature is lowered by the same amount at every step.
+	   */
+	  LINEAR {
+		@Override
+		double temperature(double start, double end, double progress) {
+		    return start + (end - start) * progress;
+		}
+	  };
+
+	  /**
+	   * Gets the temperature at a point of the annealing.
+	   *
+	   * @param start the start temperature
+	   * @param end the end temperature
+	   * @param progress how much of the annealing is done, from 0 to 1
+	   * @return the temperature
+	   */
+	  abstract double temperature(double start, double end, double progress);
+    }
+
+    /**
+     * The schedule the individuals used to be annealed with in their
+     * constructor: from 10000 down to 1, 0.8 % cooler every step.
+     */
+    public static final Annealer DEFAULT = new Annealer(Cooling.GEOMETRIC, 10000, 1, 1147, 0);
+
+    /**
+     * The cooling schedule.
+     */
+    private final Cooling cooling;
+
+    /**
+     * Temperature at the start.
+     */
+    private final double startTemperature;
+
+    /**
+     * Temperature at the end.
+     */
+    private final double endTemperature;
+
+    /**
+     * Number of moves tried.
+     */
+    private final int steps;
+
+    /**
+     * Time one annealing may take in nanoseconds, 0 for no limit.
+     */
+    private final long timeBudget;
+
+    /**
+     * Configures the annealing.
+     *
+     * @param cooling the cooling schedule
+     * @param startTemperature temperature at the start
+     * @param endTemperature temperature at the end, not higher than the
+     * start one
+     * @param steps number of moves to try
+     * @param timeBudgetMillis time the annealing of one individual may take
+     * in milliseconds, 0 for no limit; the cooling follows the clock when the
+     * budget runs out sooner than the steps
+     * @throws IllegalArgumentException if the temperatures are not positive
+     * or rise, or the steps or the budget are negative
+     */
+    public Annealer(Cooling cooling, double startTemperature, double endTemperature, int steps, long timeBudgetMillis) {
+	  if (!(endTemperature > 0) || endTemperature > startTemperature) {
+		throw new IllegalArgumentException("Temperatures must be positive and not rising: "
+			  + startTemperature + " -> " + endTemperature);
+	  }
+	  if (steps < 0 || timeBudgetMillis < 0) {
+		throw new IllegalArgumentException("Steps and time budget must not be negative: "
+			  + steps + ", " + timeBudgetMillis);
+	  }
+	  this.cooling = cooling;
+	  this.startTemperature = startTemperature;
+	  this.endTemperature = endTemperature;
+	  this.steps = steps;
+	  this.timeBudget = timeBudgetMillis * 1000000;
+    }
+
+    /**
+     * Anneals an individual in place, with its own random numbers. The
+     * individual must be a valid cover, it ends as the best cover found.
+     *
+     * @param individual the individual to anneal
+     */
+    public void anneal(Individual individual) {
+	  Graph graph = individual.getGraph();
+	  if (graph.edgesCount() == 0) {
+		return;
+	  }
+	  SplittableRandom random = individual.getRandom();
+	  long start = System.nanoTime();
+	  double timeProgress = 0;
+
+	  // saved only when a move leaves the best cover
+	  Individual best = new Individual(individual, random.split());
+	  double bestFitness = individual.getFitness();
+	  boolean bestIsCurrent = true;
+
+	  for (int step = 0; step < steps; step++) {
+		if (timeBudget > 0 && (step & 63) == 0) {
+		    timeProgress = (System.nanoTime() - start) / (double) timeBudget;
+		    if (timeProgress >= 1) {
+			  break;
+		    }
+		}
+		double temperature = cooling.temperature(startTemperature, endTemperature,
+			  Math.max((double) step / steps, timeProgress));
+
+		// select random edge and flip both its nodes
+		double oldFitness = individual.getFitness();
+		int edge = random.nextInt(graph.edgesCount());
+		individual.beginMove();
+		individual.flip(graph.getEdgeFrom(edge));
+		individual.flip(graph.getEdgeTo(edge));
+		individual.repair();
+		double newFitness = individual.getFitness();
+
+		if (acceptanceProbability(oldFitness, newFitness, temperature) > random.nextDouble()) {
+		    if (bestIsCurrent && newFitness < bestFitness) {
+			  // leaving the best cover, save it first
+			  individual.undoMove();
+			  individual.copyInto(best);
+			  individual.redoMove();
+			  bestIsCurrent = false;
+		    }
+		    individual.endMove();
+		    if (newFitness > bestFitness) {
+			  bestFitness = newFitness;
+			  bestIsCurrent = true;
+		    }
+		} else {
+		    individual.undoMove();
+		    individual.endMove();
+		}
+	  }
+
+	  if (!bestIsCurrent) {
+		best.copyInto(individual);
+	  }
+    }
+
+    /**
+     * The acceptance probability function takes in the old fitness, new
+     * fitness, and current temperature and spits out a number between 0 and 1,
+     * which is a sort of recommendation on whether or not to jump to the new
+     * solution.
+     *
+     * @param oldFitness fitness of the current solution
+     * @param newFitness fitness of the neighbouring solution
+     * @param temperature current temperature
+     * @return probability of moving to the neighbouring solution
+     */
+    static double acceptanceProbability(double oldFitness, double newFitness, double temperature) {
+	  if (newFitness >= oldFitness) {
+		return 1.0;
+	  }
+
+	  // smaller the exponent (bigger difference in fitnesses or lower
+	  // temperature), smaller the chance
+	  return Math.exp((newFitness - oldFitness) * 10 / temperature);
+    }
+
+    @Override
+    public String toString() {
+	  return "annealing: " + cooling + " " + startTemperature + " -> " + endTemperature + ", " + steps + " steps"
+		    + (timeBudget > 0 ? ", " + timeBudget / 1000000 + " ms" : "");
+    }
+}
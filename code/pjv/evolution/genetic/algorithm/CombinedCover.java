@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import pjv.evolution.genetic.VertexCover;
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.Pair;
+
+/**
+ * Vertex cover of the whole map put together from the solutions of its
+ * connected components, or lifted from the cover of its kernel. It is only
+ * used to show the result, so it is a plain view and not an individual.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class CombinedCover implements VertexCover {
+
+    /**
+     * Graph of the whole map.
+     */
+    private final Graph graph;
+
+    /**
+     * Selection of every node of the map.
+     */
+    private final boolean[] selected;
+
+    /**
+     * Sum of the fitness of all the parts.
+     */
+    private double fitness = 0;
+
+    /**
+     * Creates an empty cover of the map.
+     *
+     * @param graph graph of the whole map
+     */
+    public CombinedCover(Graph graph) {
+	  this.graph = graph;
+	  this.selected = new boolean[graph.nodesCount()];
+    }
+
+    /**
+     * Creates a cover of the map from the selection of its nodes.
+     *
+     * @param graph graph of the whole map
+     * @param selected selection of every node of the map
+     */
+    CombinedCover(Graph graph, boolean[] selected) {
+	  this.graph = graph;
+	  this.selected = selected;
+	  this.fitness = Individual.computeFitness(graph, this);
+    }
+
+    /**
+     * Creates a cover of the map from the selection of its nodes whose
+     * fitness is already known.
+     *
+     * @param graph graph of the whole map
+     * @param selected selection of every node of the map
+     * @param fitness fitness of the selection
+     */
+    CombinedCover(Graph graph, boolean[] selected, double fitness) {
+	  this.graph = graph;
+	  this.selected = selected;
+	  this.fitness = fitness;
+    }
+
+    /**
+     * Copies the selection of a component's nodes into the cover and adds the
+     * fitness of the component.
+     *
+     * @param nodes id in the map of each node of the component
+     * @param part solution of the component
+     * @param partFitness fitness of the solution
+     */
+    void addPart(int[] nodes, VertexCover part, double partFitness) {
+	  for (int i = 0; i < nodes.length; i++) {
+		selected[nodes[i]] = part.isNodeSelected(i);
+	  }
+	  fitness += partFitness;
+    }
+
+    /**
+     * Copies the selection of a component's nodes into the cover and adds the
+     * fitness of the component.
+     *
+     * @param nodes id in the map of each node of the component
+     * @param part selection and fitness of the component's nodes
+     */
+    void addPart(int[] nodes, Pair<boolean[], Double> part) {
+	  for (int i = 0; i < nodes.length; i++) {
+		selected[nodes[i]] = part.a[i];
+	  }
+	  fitness += part.b;
+    }
+
+    @Override
+    public double getFitness() {
+	  return fitness;
+    }
+
+    @Override
+    public boolean isNodeSelected(int j) {
+	  return selected[j];
+    }
+
+    @Override
+    public Graph getGraph() {
+	  return graph;
+    }
+
+    /**
+     * Creates a copy of the cover, to be filled with the parts that change.
+     *
+     * @return cover identical to the current
+     */
+    public CombinedCover deepCopy() {
+	  CombinedCover newOne = new CombinedCover(graph);
+	  System.arraycopy(selected, 0, newOne.selected, 0, selected.length);
+	  newOne.fitness = fitness;
+	  return newOne;
+    }
+
+    @Override
+    public String toString() {
+	  StringBuilder sb = new StringBuilder();
+
+	  sb.append(super.toString());
+	  sb.append(" fitness: ").append(getFitness());
+
+	  return sb.toString();
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.SplittableRandom;
+import pjv.evolution.genetic.AbstractIndividual;
+import pjv.evolution.util.Graph;
+
+/**
+ * Evolution of one connected component of the map. Vertex cover decomposes
+ * over the connected components, so every component has a population of its
+ * own and the components can be evolved at the same time, each on its own
+ * thread. <code>Evolution</code> runs all of them a generation at a time.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+class ComponentEvolution {
+
+    /**
+     * The evolution this component is part of.
+     */
+    private final Evolution evolution;
+
+    /**
+     * Graph of the component.
+     */
+    private final Graph graph;
+
+    /**
+     * Id in the whole map of each node of the component.
+     */
+    private final int[] nodes;
+
+    /**
+     * Size of the population.
+     */
+    private final int populationSize;
+
+    /**
+     * Probability of mutation.
+     */
+    private final double mutationProbability;
+
+    /**
+     * Probability of crossover.
+     */
+    private final double crossoverProbability;
+
+    /**
+     * The crossover operator.
+     */
+    private final Crossover crossover;
+
+    /**
+     * Random numbers of the component, every component has a stream of its
+     * own so that the threads do not share one and the run can be repeated.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The population of the component.
+     */
+    private Population population;
+
+    /**
+     * The best Individual of all times, a copy of its own that is overwritten
+     * whenever a better one appears.
+     */
+    private Individual topIndividual;
+
+    /**
+     * Array the next generation is bred into, the array of the generation
+     * before the current one.
+     */
+    private AbstractIndividual[] nextIndividuals;
+
+    /**
+     * Individuals not in the population, the offspring are taken from here.
+     */
+    private final IndividualPool pool;
+
+    /**
+     * The parents selected for breeding.
+     */
+    private final AbstractIndividual[] parents = new AbstractIndividual[2];
+
+    /**
+     * The individuals that survive a catastrophe.
+     */
+    private final AbstractIndividual[] survivors = new AbstractIndividual[8];
+
+    /**
+     * Generations left until the catastrophe, unless the best fitness changes.
+     */
+    private int catastropheCountdown = 200;
+
+    /**
+     * Best fitness in the previous generation.
+     */
+    private double lastFitness;
+
+    /**
+     * Prepares the evolution of a component. The first population is not
+     * generated until <code>initialize</code> is called.
+     *
+     * @param evolution the evolution this component is part of
+     * @param graph graph of the component
+     * @param nodes id in the whole map of each node of the component
+     * @param random random numbers of the component
+     */
+    ComponentEvolution(Evolution evolution, Graph graph, int[] nodes, SplittableRandom random) {
+	  this.evolution = evolution;
+	  this.graph = graph;
+	  this.nodes = nodes;
+	  this.random = random;
+	  this.populationSize = evolution.getPopulationSize();
+	  this.mutationProbability = evolution.getMutationProbability();
+	  this.crossoverProbability = evolution.getCrossoverProbability();
+	  this.crossover = evolution.getCrossover();
+	  // a whole generation and the two offspring being bred
+	  this.pool = new IndividualPool(populationSize + 2, random);
+    }
+
+    /**
+     * Generates the first population.
+     */
+    void initialize() {
+	  population = new Population(evolution, graph, populationSize, random, evolution.getSeeding());
+	  nextIndividuals = new AbstractIndividual[populationSize];
+	  topIndividual = new Individual((Individual) population.getBestIndividual(), random.split());
+	  lastFitness = population.getBestFitness();
+    }
+
+    /**
+     * Replaces the population with the next generation. The next generation
+     * is bred into the array of the generation before the current one, the
+     * two arrays swap their roles every generation, and the individuals of
+     * the replaced generation go back to the pool for the offspring of the
+     * next one.
+     */
+    void nextGeneration() {
+	  // the next generation's population
+	  AbstractIndividual[] newInds = nextIndividuals;
+	  int size = 0;
+
+	  /**
+	   * Catastrophe.
+	   *
+	   * if the best fitness has not changed for 200 generations, select
+	   * couple of random individuals from the current population (not the
+	   * best ones!) and by simulated annealing create the rest.
+	   */
+	  if (lastFitness == population.getBestFitness()) {
+		catastropheCountdown--;
+	  } else {
+		lastFitness = population.getBestFitness();
+		catastropheCountdown = 200;
+	  }
+
+	  if (catastropheCountdown < 1) {
+		// select 8 parents
+		population.selectIndividuals(random, survivors);
+		for (AbstractIndividual parent : survivors) {
+		    newInds[size++] = pool.copyOf((Individual) parent);
+		}
+		// if we don't add the top individual, we get a better result
+		// sometime, but the result at the end isn't the overall best
+		// solution we have found
+		newInds[size++] = pool.copyOf(topIndividual);
+		while (size < population.size()) {
+		    newInds[size] = new Individual(evolution, graph, true, random.split());
+		    newInds[size++].computeFitness();
+		}
+		catastropheCountdown = 200;
+	  } else {
+
+		// elitism: Preserve the best individual
+		// (this is quite exploatory and may lead to premature convergence!)
+		// ----
+		// I tried not to copy the best individiual, but the fitness at the 
+		// end is sometimes even worse than fitness we started with
+		newInds[size++] = pool.copyOf((Individual) population.getBestIndividual());
+
+		/**
+		 * Deterministic crowding.
+		 *
+		 * If the offspring has a higher fitness than its parent, it
+		 * will replace the parent. If the offsprings fitness is lower
+		 * than its parents, we will keep both the offspring and the
+		 * parent.
+		 */
+		// keep filling the new population while not enough individuals in there
+		while (size < populationSize) {
+
+		    // select 2 parents
+		    population.selectIndividuals(random, parents);
+		    Individual first = (Individual) parents[0];
+		    Individual second = (Individual) parents[1];
+
+		    // the offspring start as copies of the parents
+		    Individual a = pool.copyOf(first);
+		    Individual b = pool.copyOf(second);
+		    // with some probability, perform crossover
+		    if (crossoverProbability < random.nextDouble()) {
+			  crossover.cross(first, second, a, b, random);
+		    }
+		    // mutate first offspring, add it to the new population
+		    a.mutate(mutationProbability);
+		    a.computeFitness();
+		    newInds[size++] = a;
+
+		    // if there is still space left in the new population, add also
+		    // the second offspring
+		    boolean bAdded = size < populationSize;
+		    if (bAdded) {
+			  b.mutate(mutationProbability);
+			  b.computeFitness();
+			  newInds[size++] = b;
+		    }
+
+		    int aToFirst = a.getHammingDistance(first);
+		    int bToFirst = b.getHammingDistance(first);
+		    int aToSecond = a.getHammingDistance(second);
+		    int bToSecond = b.getHammingDistance(second);
+
+		    // the new population holds copies only, a parent is never
+		    // in there already
+		    if (aToFirst < aToSecond) {
+			  if (a.getFitness() < first.getFitness()) {
+				// if there is still space left in the new population
+				if (size < populationSize) {
+				    newInds[size++] = pool.copyOf(first);
+				}
+			  }
+		    } else {
+			  if (a.getFitness() < second.getFitness()) {
+				// if there is still space left in the new population
+				if (size < populationSize) {
+				    newInds[size++] = pool.copyOf(second);
+				}
+			  }
+		    }
+
+		    if (bToFirst < bToSecond) {
+			  if (b.getFitness() < first.getFitness()) {
+				// if there is still space left in the new population
+				if (size < populationSize) {
+				    newInds[size++] = pool.copyOf(first);
+				}
+			  }
+		    } else {
+			  if (b.getFitness() < second.getFitness()) {
+				// if there is still space left in the new population
+				if (size < populationSize) {
+				    newInds[size++] = pool.copyOf(second);
+				}
+			  }
+		    }
+
+		    if (!bAdded) {
+			  pool.release(b);
+		    }
+		}
+	  }
+
+	  // replace the current population with the new one, the replaced
+	  // individuals are reused for the generation after
+	  AbstractIndividual[] previous = population.swapIndividuals(newInds);
+	  for (int i = 0; i < previous.length; i++) {
+		pool.release((Individual) previous[i]);
+		previous[i] = null;
+	  }
+	  nextIndividuals = previous;
+
+	  Individual best = (Individual) population.getBestIndividual();
+	  if (topIndividual.getFitness() < best.getFitness()) {
+		best.copyInto(topIndividual);
+	  }
+    }
+
+    /**
+     * Gets the population of the component.
+     *
+     * @return the current population
+     */
+    Population getPopulation() {
+	  return population;
+    }
+
+    /**
+     * Gets the best individual the component has ever had.
+     *
+     * @return the best individual of all times
+     */
+    AbstractIndividual getTopIndividual() {
+	  return topIndividual;
+    }
+
+    /**
+     * Gets the ids of the component's nodes in the whole map.
+     *
+     * @return id in the whole map of each node of the component
+     */
+    int[] getNodes() {
+	  return nodes;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.SplittableRandom;
+import pjv.evolution.util.Graph;
+
+/**
+ * Crossover operators working on the 64-bit words of the genotypes. Every
+ * operator chooses which genes the offspring swap as a mask of bits per
+ * word; only the genes under the mask that differ between the parents are
+ * flipped, and the offspring are repaired afterwards.
+ *
+ * The offspring are given by the caller, so that they can be reused. They
+ * must start as copies of the parents, the first one of the first parent.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public enum Crossover {
+
+    /**
+     * Splits the genotype into 3-8 segments of the same length and swaps
+     * every other one.
+     */
+    SEGMENTS {
+	  @Override
+	  void swap(Individual first, Individual second, Individual one, Individual two, SplittableRandom random) {
+		int n = first.getGraph().nodesCount();
+		int points = random.nextInt(5);
+		points += 3; // 3-8 points of crossover
+
+		int split = n / points;
+		for (int i = 1; i < points; i += 2) {
+		    swapRange(first, second, split * i, i == points - 1 ? n : split * (i + 1), one, two);
+		}
+	  }
+    },
+    /**
+     * Cuts the genotype at 2-7 random points and swaps every other segment.
+     */
+    N_POINT {
+	  @Override
+	  void swap(Individual first, Individual second, Individual one, Individual two, SplittableRandom random) {
+		int n = first.getGraph().nodesCount();
+		int cuts = random.nextInt(5) + 2;
+
+		// the cuts are drawn in ascending order: the next one is the
+		// minimum of the remaining ones, uniform over what is left
+		double position = 0;
+		int from = 0;
+		for (int i = 0; i < cuts; i++) {
+		    position += (1 - position) * (1 - Math.pow(random.nextDouble(), 1.0 / (cuts - i)));
+		    int cut = (int) (position * n);
+		    if (i % 2 == 1) {
+			  swapRange(first, second, from, cut, one, two);
+		    }
+		    from = cut;
+		}
+		if (cuts % 2 == 1) {
+		    swapRange(first, second, from, n, one, two);
+		}
+	  }
+    },
+    /**
+     * Takes every gene from either parent with the same probability, a
+     * random mask for every word.
+     */
+    UNIFORM {
+	  @Override
+	  void swap(Individual first, Individual second, Individual one, Individual two, SplittableRandom random) {
+		int words = first.genotypeWords();
+		for (int w = 0; w < words; w++) {
+		    swapWord(first, second, w, random.nextLong(), one, two);
+		}
+	  }
+    },
+    /**
+     * Swaps a region of neighbouring nodes, grown by breadth-first search
+     * from a random node until it has between a quarter and a half of the
+     * nodes. The edges inside the region and outside of it stay covered by
+     * the parent they come from, so only the edges leaving the region may
+     * need a repair.
+     *
+     * Swapping a region gives the same pair of offspring as swapping the rest
+     * of the nodes, so there is no need to grow regions over a half.
+     */
+    REGION {
+	  @Override
+	  void swap(Individual first, Individual second, Individual one, Individual two, SplittableRandom random) {
+		Graph graph = first.getGraph();
+		int n = graph.nodesCount();
+		if (n == 0) {
+		    return;
+		}
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		Region region = REGIONS.get();
+		int[] queue = region.queue(n);
+		long[] inside = region.inside(first.genotypeWords());
+
+		int size = Math.max(1, n / 4 + random.nextInt(n / 4 + 1));
+		int head = 0;
+		int tail = 0;
+		while (tail < size) {
+		    if (head == tail) {
+			  // start, or the component has been used up: go on from
+			  // a random node outside the region
+			  int start = random.nextInt(n);
+			  while ((inside[start >>> 6] & (1L << start)) != 0) {
+				start = start + 1 == n ? 0 : start + 1;
+			  }
+			  inside[start >>> 6] |= 1L << start;
+			  queue[tail++] = start;
+		    }
+		    int u = queue[head++];
+		    for (int k = offsets[u]; k < offsets[u + 1] && tail < size; k++) {
+			  int v = neighbors[k];
+			  if ((inside[v >>> 6] & (1L << v)) == 0) {
+				inside[v >>> 6] |= 1L << v;
+				queue[tail++] = v;
+			  }
+		    }
+		}
+
+		// the region is the mask; clear it for the next crossover
+		for (int w = 0; w < inside.length; w++) {
+		    if (inside[w] != 0) {
+			  swapWord(first, second, w, inside[w], one, two);
+			  inside[w] = 0;
+		    }
+		}
+	  }
+    };
+
+    /**
+     * Buffers of the region crossover, one for every thread.
+     */
+    private static final ThreadLocal<Region> REGIONS = ThreadLocal.withInitial(Region::new);
+
+    /**
+     * Chooses the genes the offspring swap and swaps them.
+     *
+     * @param first the first parent
+     * @param second the second parent
+     * @param one copy of the first parent
+     * @param two copy of the second parent
+     * @param random the random numbers to use
+     */
+    abstract void swap(Individual first, Individual second, Individual one, Individual two, SplittableRandom random);
+
+    /**
+     * Crosses two parents over into the given offspring.
+     *
+     * @param first the first parent
+     * @param second the second parent
+     * @param one copy of the first parent, becomes the first offspring
+     * @param two copy of the second parent, becomes the second offspring
+     * @param random the random numbers to use
+     */
+    public void cross(Individual first, Individual second, Individual one, Individual two, SplittableRandom random) {
+	  swap(first, second, one, two, random);
+	  one.repair();
+	  two.repair();
+    }
+
+    /**
+     * Crosses two parents over by a mask given by the caller: the offspring
+     * swap the genes whose bits are set in the mask, bit <code>j % 64</code>
+     * of word <code>j / 64</code> for node <code>j</code>.
+     *
+     * @param first the first parent
+     * @param second the second parent
+     * @param mask the genes to swap, the words past its end are not swapped
+     * @param one copy of the first parent, becomes the first offspring
+     * @param two copy of the second parent, becomes the second offspring
+     */
+    public static void masked(Individual first, Individual second, long[] mask, Individual one, Individual two) {
+	  int words = Math.min(mask.length, first.genotypeWords());
+	  for (int w = 0; w < words; w++) {
+		swapWord(first, second, w, mask[w], one, two);
+	  }
+	  one.repair();
+	  two.repair();
+    }
+
+    /**
+     * Swaps the genes of a range of nodes, a word at a time.
+     *
+     * @param first the first parent
+     * @param second the second parent
+     * @param from the first node of the range
+     * @param to the node after the range
+     * @param one copy of the first parent
+     * @param two copy of the second parent
+     */
+    private static void swapRange(Individual first, Individual second, int from, int to, Individual one, Individual two) {
+	  if (from >= to) {
+		return;
+	  }
+	  int firstWord = from >>> 6;
+	  int lastWord = (to - 1) >>> 6;
+	  for (int w = firstWord; w <= lastWord; w++) {
+		long mask = -1L;
+		if (w == firstWord) {
+		    mask &= -1L << (from & 63);
+		}
+		if (w == lastWord) {
+		    mask &= -1L >>> (63 - ((to - 1) & 63));
+		}
+		swapWord(first, second, w, mask, one, two);
+	  }
+    }
+
+    /**
+     * Swaps the genes under the mask of a single word.
+     *
+     * @param first the first parent
+     * @param second the second parent
+     * @param w index of the word
+     * @param mask the genes of the word to swap
+     * @param one copy of the first parent
+     * @param two copy of the second parent
+     */
+    private static void swapWord(Individual first, Individual second, int w, long mask, Individual one, Individual two) {
+	  one.takeGenes(second, w, mask);
+	  two.takeGenes(first, w, mask);
+    }
+
+    /**
+     * Buffers of the region crossover, kept between the crossovers so that
+     * they do not allocate. They only grow.
+     */
+    private static final class Region {
+
+	  /**
+	   * Nodes of the region in the order they were reached.
+	   */
+	  private int[] queue = new int[0];
+
+	  /**
+	   * Bit of every node of the region, all 0 between the crossovers.
+	   */
+	  private long[] inside = new long[0];
+
+	  /**
+	   * Gets the queue, big enough for a graph.
+	   *
+	   * @param nodesCount number of nodes of the graph
+	   * @return the queue
+	   */
+	  int[] queue(int nodesCount) {
+		if (queue.length < nodesCount) {
+		    queue = new int[nodesCount];
+		}
+		return queue;
+	  }
+
+	  /**
+	   * Gets the bits of the region, big enough for a genotype.
+	   *
+	   * @param words length of the genotype in words
+	   * @return the bits of the region
+	   */
+	  long[] inside(int words) {
+		if (inside.length < words) {
+		    inside = new long[words];
+		}
+		return inside;
+	  }
+    }
+}
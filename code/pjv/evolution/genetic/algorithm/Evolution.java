@@ -25,13 +25,15 @@ package pjv.evolution.genetic.algorithm;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import javafx.application.Platform;
 import pjv.evolution.PJVEvolutionController;
 import pjv.evolution.genetic.AbstractEvolution;
-import pjv.evolution.genetic.AbstractIndividual;
+import pjv.evolution.genetic.VertexCover;
+import pjv.evolution.reduce.Kernel;
+import pjv.evolution.reduce.Reducer;
+import pjv.evolution.util.Graph;
 import pjv.evolution.util.Pair;
-import pjv.evolution.util.StateSpace;
+import pjv.evolution.util.RandomStreams;
 
 /**
  * Concrete implementation of evolutionary algorithm. Inherits from <code>
@@ -63,26 +65,68 @@ public class Evolution extends AbstractEvolution<Individual> implements Runnable
     private final int debugLimit = 100;
 
     /**
-     * Instance of Random because of the frequent usage of random number
-     * generation within the evolution.
+     * Random numbers of the run, every component gets a stream of its own.
      */
-    private final Random rand = new Random();
+    private final RandomStreams random;
 
     /**
-     * The population to be used in the evolution.
+     * The crossover operator.
      */
-    Population population;
+    private Crossover crossover = Crossover.REGION;
+
+    /**
+     * The annealing of the first population.
+     */
+    private Annealer seeding = Annealer.DEFAULT;
+
+    /**
+     * Evolutions of the connected components that are too big to be solved
+     * exactly.
+     */
+    private List<ComponentEvolution> components;
+
+    /**
+     * Cover of the small components, solved exactly before the evolution
+     * starts.
+     */
+    private CombinedCover exactParts;
+
+    /**
+     * The map after the reduction rules, the evolution works on its graph.
+     */
+    private Kernel kernel;
 
     /**
      * Configure the evolution.
      *
-     * @param cl reference to the GUI controller
+     * @param cl reference to the GUI controller, <code>null</code> to run
+     * without the GUI
+     * @param graph graph of the map to solve
+     * @param g generations count
+     * @param pop population size
+     * @param mr mutation rate
+     * @param cp crossover probability
+     */
+    public Evolution(PJVEvolutionController cl, Graph graph, int g, int pop, double mr, double cp) {
+	  this(cl, graph, g, pop, mr, cp, RandomStreams.newSeed());
+    }
+
+    /**
+     * Configure the evolution with a given seed of the random numbers. The
+     * same seed gives the same run.
+     *
+     * @param cl reference to the GUI controller, <code>null</code> to run
+     * without the GUI
+     * @param graph graph of the map to solve
      * @param g generations count
      * @param pop population size
      * @param mr mutation rate
      * @param cp crossover probability
+     * @param seed master seed of the random numbers
      */
-    public Evolution(PJVEvolutionController cl, int g, int pop, double mr, double cp) {
+    public Evolution(PJVEvolutionController cl, Graph graph, int g, int pop, double mr, double cp, long seed) {
+	  this.graph = graph;
+	  random = new RandomStreams(seed);
 	  generations = g;
 	  populationSize = pop;
 	  mutationProbability = mr;
@@ -97,31 +141,56 @@ public class Evolution extends AbstractEvolution<Individual> implements Runnable
     @Override
     public void run() {
 	  // Initialize the population, show the "generating first population" panel
-	  Platform.runLater(() -> {
+	  updateGui(() -> {
 		context.setFirstGenerationPanelVisibility(true);
 	  });
-	  population = new Population(this, populationSize);
 
-	  Random random = new Random();
+	  // record the seed, so that the run can be repeated
+	  System.out.println("random " + random);
+	  System.out.println(seeding);
+
+	  // shrink the map with the reduction rules, only the kernel is evolved
+	  kernel = new Reducer(graph).reduce();
+	  System.out.println(kernel);
+	  Graph kernelGraph = kernel.getGraph();
+
+	  // vertex cover decomposes over the connected components: solve the
+	  // small ones right away and evolve a population for each of the others
+	  exactParts = new CombinedCover(kernelGraph);
+	  components = new ArrayList<>();
+	  for (int[] nodes : kernelGraph.getComponentNodes()) {
+		// the streams go by the index of the component, not by the thread
+		if (nodes.length <= ExactCover.MAX_NODES) {
+		    exactParts.addPart(nodes, ExactCover.solve(kernelGraph, nodes));
+		} else if (nodes.length == kernelGraph.nodesCount()) {
+		    components.add(new ComponentEvolution(this, kernelGraph, nodes, random.stream(components.size())));
+		} else {
+		    components.add(new ComponentEvolution(this, kernelGraph.inducedSubgraph(nodes), nodes,
+				random.stream(components.size())));
+		}
+	  }
+	  System.out.println("components: " + kernelGraph.componentsCount() + ", evolved: " + components.size());
+
+	  // every component on its own thread
+	  components.parallelStream().forEach((component) -> {
+		component.initialize();
+	  });
 
 	  // Collect initial system time, average fitness, and the best fitness
 	  time.a = System.currentTimeMillis();
-	  avgFitness.a = population.getAvgFitness();
-	  AbstractIndividual best = population.getBestIndividual();
-	  bestFitness.a = best.getFitness();
+	  long evaluations = Individual.getEvaluationsCount();
+	  int generationsRun = 0;
+	  avgFitness.a = getAvgFitness();
+	  double best = getBestIndividual().getFitness();
+	  bestFitness.a = best;
 
 	  /// print out current population status
-	  System.out.println(population);
-
-	  // remember the best Individual of all times
-	  AbstractIndividual topIndividual = population.getBestIndividual();
-
-	  // implement the catastrophe
-	  int catastropheCountdown = 200;
-	  double lastFitness = population.getBestFitness();
+	  components.stream().forEach((component) -> {
+		System.out.println(component.getPopulation());
+	  });
 
 	  // hide the "generating first population" panel
-	  Platform.runLater(() -> {
+	  updateGui(() -> {
 		context.setFirstGenerationPanelVisibility(false);
 	  });
 
@@ -134,191 +203,226 @@ public class Evolution extends AbstractEvolution<Individual> implements Runnable
 		    break;
 		}
 
-		// request to refresh the GUI
-		int gen = g;
-		Platform.runLater(() -> {
-		    context.refreshFitness(population.getAvgFitness(), population.getBestFitness(), gen);
-		    context.refreshGeneration(gen);
-		    context.refreshVertexCover(StateSpace.nodesCount(), (int) population.getVertexCover(population.getBestIndividual()).a);
-		    context.refreshEdgeCoverage(StateSpace.edgesCount(), (int) population.getVertexCover(population.getBestIndividual()).b);
-		    // redraw map after 5 generations
-		    if (gen % 10 == 0) {
-			  context.redrawMap(population.getBestIndividual());
-		    }
-		});
+		// request to refresh the GUI, redraw map after 10 generations
+		refreshGui(g, g % 10 == 0);
 
-		// initialize the next generation's population
-		ArrayList<AbstractIndividual> newInds = new ArrayList<>();
-
-		/**
-		 * Catastrophe.
-		 *
-		 * if the best fitness has not changed for 200 generations, select
-		 * couple of random individuals from the current population (not the
-		 * best ones!) and by simulated annealing create the rest.
-		 */
-		if (lastFitness == population.getBestFitness()) {
-		    catastropheCountdown--;
-		} else {
-		    lastFitness = population.getBestFitness();
-		    catastropheCountdown = 200;
-		}
-
-		if (catastropheCountdown < 1) {
-		    // select 8 parents
-		    List<AbstractIndividual> parents = population.selectIndividuals(8);
-		    parents.stream().forEach((parent) -> {
-			  newInds.add(parent.deepCopy());
-		    });
-		    // if we don't add the top individual, we get a better result
-		    // sometime, but the result at the end isn't the overall best
-		    // solution we have found
-		    newInds.add(topIndividual);
-		    for (int i = newInds.size(); i < population.size(); i++) {
-			  newInds.add(new Individual(this, true));
-			  newInds.get(newInds.size() - 1).computeFitness();
-		    }
-		    catastropheCountdown = 200;
-		} else {
-
-		    // elitism: Preserve the best individual
-		    // (this is quite exploatory and may lead to premature convergence!)
-		    // ----
-		    // I tried not to copy the best individiual, but the fitness at the 
-		    // end is sometimes even worse than fitness we started with
-		    newInds.add(population.getBestIndividual().deepCopy());
-
-		    /**
-		     * Deterministic crowding.
-		     *
-		     * If the offspring has a higher fitness than its parent, it
-		     * will replace the parent. If the offsprings fitness is lower
-		     * than its parents, we will keep both the offspring and the
-		     * parent.
-		     */
-		    // keep filling the new population while not enough individuals in there
-		    while (newInds.size() < populationSize) {
-
-			  // select 2 parents
-			  List<AbstractIndividual> parents = population.selectIndividuals(2);
-
-			  Pair<AbstractIndividual, AbstractIndividual> offspring;
-			  // with some probability, perform crossover
-			  if (crossoverProbability < random.nextDouble()) {
-				offspring = parents.get(0).deepCopy().crossover(
-					  parents.get(1).deepCopy());
-			  } else { // otherwise, only copy the parents
-				offspring = new Pair<>();
-				offspring.a = parents.get(0).deepCopy();
-				offspring.b = parents.get(1).deepCopy();
-			  }
-			  // mutate first offspring, add it to the new population
-			  offspring.a.mutate(mutationProbability);
-			  offspring.a.computeFitness();
-			  newInds.add(offspring.a);
-
-			  // if there is still space left in the new population, add also
-			  // the second offspring
-			  if (newInds.size() < populationSize) {
-				offspring.b.mutate(mutationProbability);
-				offspring.b.computeFitness();
-				newInds.add(offspring.b);
-			  }
-
-			  Individual a = (Individual) offspring.a;
-			  Individual b = (Individual) offspring.b;
-
-			  int aToFirst = a.getHammingDistance(parents.get(0));
-			  int bToFirst = b.getHammingDistance(parents.get(0));
-			  int aToSecond = a.getHammingDistance(parents.get(1));
-			  int bToSecond = b.getHammingDistance(parents.get(1));
-
-			  if (aToFirst < aToSecond) {
-				if (offspring.a.getFitness() < parents.get(0).getFitness()) {
-				    // if there is still space left in the new population
-				    if (newInds.size() < populationSize) {
-					  if (!newInds.contains(parents.get(0))) {
-						newInds.add(parents.get(0).deepCopy());
-					  }
-				    }
-				}
-			  } else {
-				if (offspring.a.getFitness() < parents.get(1).getFitness()) {
-				    // if there is still space left in the new population
-				    if (newInds.size() < populationSize) {
-					  if (!newInds.contains(parents.get(1))) {
-						newInds.add(parents.get(1).deepCopy());
-					  }
-				    }
-				}
-			  }
-
-			  if (bToFirst < bToSecond) {
-				if (offspring.b.getFitness() < parents.get(0).getFitness()) {
-				    // if there is still space left in the new population
-				    if (newInds.size() < populationSize) {
-					  if (!newInds.contains(parents.get(0))) {
-						newInds.add(parents.get(0).deepCopy());
-					  }
-				    }
-				}
-			  } else {
-				if (offspring.b.getFitness() < parents.get(1).getFitness()) {
-				    // if there is still space left in the new population
-				    if (newInds.size() < populationSize) {
-					  if (!newInds.contains(parents.get(1))) {
-						newInds.add(parents.get(1).deepCopy());
-					  }
-				    }
-				}
-			  }
-		    }
-		}
-
-		// replace the current population with the new one
-		for (int i = 0; i < newInds.size(); i++) {
-		    population.setIndividualAt(i, newInds.get(i));
-		}
-
-		if (topIndividual.getFitness() < population.getBestIndividual().getFitness()) {
-		    topIndividual = population.getBestIndividual();
-		}
+		// every component on its own thread
+		components.parallelStream().forEach((component) -> {
+		    component.nextGeneration();
+		});
+		generationsRun++;
 
 		// print statistic
-		System.out.println("gen: " + g + "\t bestFit: " + population.getBestIndividual().getFitness() + "\t avgFit: " + population.getAvgFitness());
+		System.out.println("gen: " + g + "\t bestFit: " + getBestIndividual().getFitness() + "\t avgFit: " + getAvgFitness());
 
 		if (g % debugLimit == 0) {
-		    best = population.getBestIndividual();
+		    best = getBestIndividual().getFitness();
 		}
 	  }
 
 	  if (!interrupted) {
-		Platform.runLater(() -> {
-		    context.refreshFitness(population.getAvgFitness(), population.getBestFitness(), generations);
-		    context.refreshGeneration(generations);
-		    context.refreshVertexCover(StateSpace.nodesCount(), (int) population.getVertexCover(population.getBestIndividual()).a);
-		    context.refreshEdgeCoverage(StateSpace.edgesCount(), (int) population.getVertexCover(population.getBestIndividual()).b);
-		    context.redrawMap(population.getBestIndividual());
-		});
+		refreshGui(generations, true);
 	  }
 
 	  // === END ===
 	  time.b = System.currentTimeMillis();
-	  population.sortByFitness();
-	  avgFitness.b = population.getAvgFitness();
-	  bestFitness.b = best.getFitness();
+	  components.stream().forEach((component) -> {
+		component.getPopulation().sortByFitness();
+	  });
+	  avgFitness.b = getAvgFitness();
+	  bestFitness.b = best;
 	  //updateMap(best);
 	  System.out.println("Evolution has finished after " + ((time.b - time.a) / 1000.0) + " s...");
+	  System.out.println("random " + random);
 	  System.out.println("avgFit(G:0)= " + avgFitness.a + " avgFit(G:" + (generations - 1) + ")= " + avgFitness.b + " -> " + ((avgFitness.b / avgFitness.a) * 100) + " %");
+	  System.out.println("fitness evaluations per generation= "
+		    + (Individual.getEvaluationsCount() - evaluations) / (double) Math.max(1, generationsRun));
 	  System.out.println("bstFit(G:0)= " + bestFitness.a + " bstFit(G:" + (generations - 1) + ")= " + bestFitness.b + " -> " + ((bestFitness.b / bestFitness.a) * 100) + " %");
-	  System.out.println("bestIndividual in current population= " + population.getBestIndividual());
-	  System.out.println("bestIndividual of all times= " + topIndividual);
+	  System.out.println("bestIndividual in current population= " + getBestIndividual());
+	  System.out.println("bestIndividual of all times= " + lift(getTopIndividual()));
 	  //System.out.println(pop);
 
 	  System.out.println("========== Evolution finished =============");
 
-	  Platform.runLater(() -> {
+	  updateGui(() -> {
 		context.evolutionStopped();
 	  });
     }
+
+    /**
+     * Gets the crossover operator.
+     *
+     * @return the crossover operator
+     */
+    public Crossover getCrossover() {
+	  return crossover;
+    }
+
+    /**
+     * Sets the crossover operator, before the evolution is started.
+     *
+     * @param crossover the crossover operator
+     */
+    public void setCrossover(Crossover crossover) {
+	  this.crossover = crossover;
+    }
+
+    /**
+     * Gets the annealing of the first population.
+     *
+     * @return the annealing of the first population
+     */
+    public Annealer getSeeding() {
+	  return seeding;
+    }
+
+    /**
+     * Sets the annealing of the first population, before the evolution is
+     * started.
+     *
+     * @param seeding the annealing of the first population
+     */
+    public void setSeeding(Annealer seeding) {
+	  this.seeding = seeding;
+    }
+
+    /**
+     * Gets the master seed of the random numbers, the run can be repeated
+     * with it.
+     *
+     * @return the master seed
+     */
+    public long getSeed() {
+	  return random.getSeed();
+    }
+
+    /**
+     * Computes the average fitness of the whole map, which is the sum of the
+     * average fitness of every component.
+     *
+     * @return average fitness in the populations
+     */
+    private double getAvgFitness() {
+	  double sum = exactParts.getFitness();
+	  for (ComponentEvolution component : components) {
+		sum += component.getPopulation().getAvgFitness();
+	  }
+	  return sum;
+    }
+
+    /**
+     * Computes the best fitness of the whole map, which is the sum of the best
+     * fitness of every component.
+     *
+     * @return best fitness in the populations
+     */
+    private double getBestFitness() {
+	  double sum = exactParts.getFitness();
+	  for (ComponentEvolution component : components) {
+		sum += component.getPopulation().getBestFitness();
+	  }
+	  return sum;
+    }
+
+    /**
+     * Puts together the best individuals of all the components.
+     *
+     * @return the best vertex cover of the whole map in current populations
+     */
+    private VertexCover getBestIndividual() {
+	  return combine(false);
+    }
+
+    /**
+     * Puts together the best individuals of all times of all the components.
+     *
+     * @return the best vertex cover of the whole map ever found
+     */
+    private VertexCover getTopIndividual() {
+	  return combine(true);
+    }
+
+    /**
+     * Puts together the vertex cover of the whole map from the exactly solved
+     * components and the best individual of every evolved component. When the
+     * whole map is a single component, its individual is returned as it is,
+     * nothing is copied; the populations reuse their individuals, so the cover
+     * is only valid until the next generation is bred.
+     *
+     * @param top <code>true</code> to take the best individuals of all times,
+     * <code>false</code> to take the best ones in the current populations
+     * @return vertex cover of the whole map
+     */
+    private VertexCover combine(boolean top) {
+	  if (components.size() == 1 && components.get(0).getNodes().length == kernel.getGraph().nodesCount()) {
+		ComponentEvolution component = components.get(0);
+		return top ? component.getTopIndividual() : component.getPopulation().getBestIndividual();
+	  }
+	  CombinedCover combined = exactParts.deepCopy();
+	  for (ComponentEvolution component : components) {
+		VertexCover part = top ? component.getTopIndividual() : component.getPopulation().getBestIndividual();
+		combined.addPart(component.getNodes(), part, part.getFitness());
+	  }
+	  return combined;
+    }
+
+    /**
+     * Turns a vertex cover of the kernel into a vertex cover of the whole map.
+     * The result is a copy of the selection, so it can be shown while the
+     * evolution goes on.
+     *
+     * @param kernelCover vertex cover of the kernel
+     * @return vertex cover of the whole map
+     */
+    private VertexCover lift(VertexCover kernelCover) {
+	  boolean[] selected = new boolean[kernel.getGraph().nodesCount()];
+	  for (int i = 0; i < selected.length; i++) {
+		selected[i] = kernelCover.isNodeSelected(i);
+	  }
+	  if (kernel.isTrivial()) {
+		// the kernel is the map, there is nothing to lift or to evaluate
+		return new CombinedCover(graph, selected, kernelCover.getFitness());
+	  }
+	  return new CombinedCover(graph, kernel.lift(selected));
+    }
+
+    /**
+     * Shows the state of the evolution in the GUI. The values are computed on
+     * the evolution thread, the GUI only displays them. The fitness is that
+     * of the kernel, which is what is evolved; the cover counts and the map
+     * are those of the cover lifted to the whole map the user loaded.
+     *
+     * @param gen generation number
+     * @param redraw <code>true</code> to redraw the map as well
+     */
+    private void refreshGui(int gen, boolean redraw) {
+	  if (context == null) {
+		return;
+	  }
+	  double avg = getAvgFitness();
+	  double bestFit = getBestFitness();
+	  VertexCover lifted = lift(getBestIndividual());
+	  Pair<Integer, Integer> cover = lifted.getVertexCover();
+	  updateGui(() -> {
+		context.refreshFitness(avg, bestFit, gen);
+		context.refreshGeneration(gen);
+		context.refreshVertexCover(graph.nodesCount(), cover.a);
+		context.refreshEdgeCoverage(graph.edgesCount(), cover.b);
+		if (redraw) {
+		    context.redrawMap(lifted);
+		}
+	  });
+    }
+
+    /**
+     * Runs the GUI update on the JavaFX application thread. Does nothing when
+     * the evolution runs without the GUI.
+     *
+     * @param update the update to run
+     */
+    private void updateGui(Runnable update) {
+	  if (context != null) {
+		Platform.runLater(update);
+	  }
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.Arrays;
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.Pair;
+
+/**
+ * Exhaustive search for the best vertex cover of a small connected component.
+ * Tries every subset of the component's nodes that covers all its edges and
+ * keeps the one with the best fitness, using the same weights as
+ * <code>Individual.computeFitness</code>.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class ExactCover {
+
+    /**
+     * Largest component that is solved exactly, the search tries 2^n subsets.
+     */
+    static final int MAX_NODES = 16;
+
+    /**
+     * Only static methods.
+     */
+    private ExactCover() {
+    }
+
+    /**
+     * Finds the best vertex cover of a component.
+     *
+     * @param graph the whole graph
+     * @param nodes ids of the component's nodes in ascending order, at most
+     * <code>MAX_NODES</code> of them
+     * @return selection of each node of the component (in the order of
+     * <code>nodes</code>) and the fitness of the selection
+     */
+    static Pair<boolean[], Double> solve(Graph graph, int[] nodes) {
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  byte[] preferred = graph.getPreferredEndpoints();
+
+	  // edges of the component in local ids, each one once
+	  int edgesCount = 0;
+	  for (int u : nodes) {
+		edgesCount += offsets[u + 1] - offsets[u];
+	  }
+	  int[] from = new int[edgesCount];
+	  int[] to = new int[edgesCount];
+	  boolean[] fromPreferred = new boolean[edgesCount];
+	  edgesCount = 0;
+	  for (int i = 0; i < nodes.length; i++) {
+		int u = nodes[i];
+		for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+		    if (neighbors[k] >= u) {
+			  from[edgesCount] = i;
+			  to[edgesCount] = Arrays.binarySearch(nodes, neighbors[k]);
+			  fromPreferred[edgesCount] = preferred[k] == 1;
+			  edgesCount++;
+		    }
+		}
+	  }
+
+	  int bestMask = (1 << nodes.length) - 1;
+	  double bestFitness = Double.NEGATIVE_INFINITY;
+	  for (int mask = 0; mask < (1 << nodes.length); mask++) {
+		double fitness = Individual.NODE_OFF_REWARD * (nodes.length - Integer.bitCount(mask));
+		boolean covers = true;
+		for (int e = 0; e < edgesCount && covers; e++) {
+		    boolean fromSelected = (mask >>> from[e] & 1) == 1;
+		    boolean toSelected = (mask >>> to[e] & 1) == 1;
+		    if (fromSelected && toSelected) {
+			  fitness -= Individual.BOTH_ON_PENALTY;
+		    } else if (!fromSelected && !toSelected) {
+			  covers = false;
+		    } else if (fromPreferred[e] ? toSelected : fromSelected) {
+			  fitness -= Individual.WEAK_ENDPOINT_PENALTY;
+		    }
+		}
+		if (covers && fitness > bestFitness) {
+		    bestFitness = fitness;
+		    bestMask = mask;
+		}
+	  }
+
+	  Pair<boolean[], Double> result = new Pair<>();
+	  result.a = new boolean[nodes.length];
+	  for (int i = 0; i < nodes.length; i++) {
+		result.a[i] = (bestMask >>> i & 1) == 1;
+	  }
+	  result.b = bestFitness;
+	  return result;
+    }
+}
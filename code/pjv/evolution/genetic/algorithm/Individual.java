@@ -23,14 +23,14 @@
  */
 package pjv.evolution.genetic.algorithm;
 
-import java.util.List;
-import java.util.Random;
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
 import pjv.evolution.genetic.AbstractEvolution;
 import pjv.evolution.genetic.AbstractIndividual;
-import pjv.evolution.util.Edge;
+import pjv.evolution.genetic.VertexCover;
+import pjv.evolution.util.Graph;
 import pjv.evolution.util.Pair;
-import pjv.evolution.util.StateSpace;
 
 /**
  * Class for individuals in evolutionary algorithm. It declares the genotype,
@@ -41,100 +41,211 @@ import pjv.evolution.util.StateSpace;
  */
 public final class Individual extends AbstractIndividual {
 
+    /**
+     * Fitness gained for every node that is not part of the vertex cover.
+     */
+    static final double NODE_OFF_REWARD = 10;
+
+    /**
+     * Fitness lost for every edge with both nodes turned on.
+     */
+    static final double BOTH_ON_PENALTY = 2;
+
+    /**
+     * Fitness lost for every edge covered only by the node with fewer edges.
+     */
+    static final double WEAK_ENDPOINT_PENALTY = 0.8;
+
+    /**
+     * Number of times the fitness has been evaluated over the whole graph,
+     * by all the individuals.
+     */
+    private static final LongAdder EVALUATIONS = new LongAdder();
+
     /**
      * Fitness of the individual.
      */
     private double fitness = Double.NaN;
 
+    /**
+     * Number of nodes that are not selected, kept up to date by
+     * <code>flip</code>.
+     */
+    private int unselectedCount;
+
+    /**
+     * Number of edges with both nodes selected, kept up to date by
+     * <code>flip</code>.
+     */
+    private int bothSelectedCount;
+
+    /**
+     * Number of edges covered only by the node with fewer edges, kept up to
+     * date by <code>flip</code>.
+     */
+    private int weakEndpointCount;
+
+    /**
+     * Number of edges with neither node selected, kept up to date by
+     * <code>flip</code>.
+     */
+    private int uncoveredCount;
+
+    /**
+     * Nodes that may have uncovered edges, those turned off since the last
+     * repair. Used as a stack by <code>repair</code>.
+     */
+    private int[] repairNodes;
+
+    /**
+     * Number of nodes in <code>repairNodes</code>.
+     */
+    private int repairNodesCount;
+
     /**
      * Current evolution reference.
      */
     private final AbstractEvolution evolution;
 
     /**
-     * Definition of individual's genotype.
+     * Random numbers of the individual, a stream of its own split from the
+     * stream of the component.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Nodes flipped since <code>beginMove</code>, in order, so that the move
+     * can be undone.
+     */
+    private int[] moveNodes = new int[0];
+
+    /**
+     * Number of nodes in <code>moveNodes</code>, -1 when no move is being
+     * recorded.
      */
-    private Vector<Boolean> genotype;
+    private int moveNodesCount = -1;
+
+    /**
+     * The counts behind the fitness before the move and after it, so that
+     * undoing or redoing a move only has to flip the bits back.
+     */
+    private final int[] moveCounts = new int[6];
+
+    /**
+     * Graph of the map the genotype encodes.
+     */
+    private final Graph graph;
+
+    /**
+     * Definition of individual's genotype, one bit per node: bit
+     * <code>j % 64</code> of word <code>j / 64</code> is set if node
+     * <code>j</code> is selected. The bits past the last node are always 0.
+     */
+    private final long[] genotype;
 
     /**
      * Creates a new individual.
      *
-     * Either a random init or Simulated annealing.
+     * Either a random init or the greedy cover the repair makes of an empty
+     * one, to be improved by <code>Annealer</code>.
      *
      * @param evolution The evolution object
+     * @param graph graph of the map the genotype encodes
      * @param randomInit <code>true</code> if the individual should be
      * initialized randomly (we do wish to initialize if we copy the individual)
+     * @param random random numbers of the individual, not to be used by
+     * anyone else
      */
-    public Individual(AbstractEvolution evolution, boolean randomInit) {
-	  this.genotype = new Vector<>(StateSpace.nodesCount());
+    public Individual(AbstractEvolution evolution, Graph graph, boolean randomInit, SplittableRandom random) {
+	  EVALUATIONS.increment();
+	  this.genotype = new long[(graph.nodesCount() + 63) >>> 6];
 	  this.evolution = evolution;
-
-	  Random r = new Random();
+	  this.graph = graph;
+	  this.random = random;
+
+	  // no node is selected, so every edge is uncovered and every node may
+	  // need a repair; the stack gives them to repair in ascending order
+	  this.unselectedCount = graph.nodesCount();
+	  this.uncoveredCount = graph.edgesCount();
+	  this.repairNodes = new int[graph.nodesCount()];
+	  for (int i = 0; i < graph.nodesCount(); i++) {
+		repairNodes[i] = graph.nodesCount() - 1 - i;
+	  }
+	  this.repairNodesCount = graph.nodesCount();
+	  this.fitness = fitness(unselectedCount, bothSelectedCount, weakEndpointCount);
 
 	  if (randomInit) {
-		for (int i = 0; i < StateSpace.nodesCount(); i++) {
-		    boolean x = r.nextBoolean();
-		    genotype.add(x);
+		for (int i = 0; i < graph.nodesCount(); i++) {
+		    boolean x = random.nextBoolean();
+		    setNodeSelected(i, x);
 		}
 		repair();
 	  } else {
-		// Set initial temp
-		double temperature = 10000;
-		// Cooling rate
-		double coolingRate = 0.008;
-
-		// initialize the individual
-		for (int i = 0; i < StateSpace.nodesCount(); i++) {
-		    //boolean x = r.nextBoolean();
-		    genotype.add(false);
-		}
+		// the greedy cover, the genes are all false so far
 		repair();
+	  }
+    }
 
-		Individual current = this.deepCopy();
-		Individual best = this.deepCopy();
-
-		int run = 0;
-		// until frozen
-		while (temperature > 1) {
-		    // copy individual and mutate it little bit (to find a close neighbour)
-		    Individual y = current.deepCopy();
-
-		    // select random edge and flip which node is turned on
-		    int randomIndex = r.nextInt(StateSpace.edgesCount());
-		    int fromIndex = StateSpace.getEdge(randomIndex).getFromId();
-		    int toIndex = StateSpace.getEdge(randomIndex).getToId();
-		    // negate their values
-		    y.genotype.set(fromIndex, !y.genotype.get(fromIndex));
-		    y.genotype.set(toIndex, !y.genotype.get(toIndex));
-		    y.repair();
-
-		    double nextRandom = r.nextDouble();
-		    // if the new one is better, replace the old one right away
-		    // if the old one is worse, calculate probability of replacing
-		    // the new one by the old one. We will get the probability as
-		    // e ^ ((current.fitness - y.fitness) / temperature)
-		    if (acceptanceProbability(current.fitness, y.fitness, temperature) > nextRandom) {
-			  current = y.deepCopy();
-		    } else {
-			  int ahoj = 2;
-		    }
-
-		    // if current solution is better than the best one, replace it
-		    if (current.fitness > best.fitness) {
-			  best = current.deepCopy();
-		    }
-
-		    // lower the temperature
-		    temperature *= 1 - coolingRate;
-		    run++;
-		}
+    /**
+     * Creates a copy of an individual. Nothing is evaluated, the copy takes
+     * over the fitness of the original. The copy gets the random stream it is
+     * given, the original's one is not touched, so copying an individual does
+     * not change the numbers it draws.
+     *
+     * @param other the individual to copy
+     * @param random random numbers of the copy, not to be used by anyone else
+     */
+    public Individual(Individual other, SplittableRandom random) {
+	  this.evolution = other.evolution;
+	  this.graph = other.graph;
+	  this.random = random;
+	  this.genotype = other.genotype.clone();
+	  this.unselectedCount = other.unselectedCount;
+	  this.bothSelectedCount = other.bothSelectedCount;
+	  this.weakEndpointCount = other.weakEndpointCount;
+	  this.uncoveredCount = other.uncoveredCount;
+	  this.repairNodes = Arrays.copyOf(other.repairNodes, other.repairNodesCount);
+	  this.repairNodesCount = other.repairNodesCount;
+	  this.fitness = other.fitness;
+	  this.moveNodesCount = -1;
+    }
 
-		for (int i = 0; i < best.genotype.size(); i++) {
-		    this.genotype.set(i, best.genotype.get(i));
-		}
-		this.fitness = best.fitness;
+    /**
+     * Makes another individual of the same graph a copy of this one, reusing
+     * its genotype instead of allocating a new one. The target keeps its own
+     * random stream.
+     *
+     * @param target the individual to overwrite
+     * @throws IllegalArgumentException if the target belongs to another graph
+     */
+    public void copyInto(Individual target) {
+	  if (target.graph != graph) {
+		throw new IllegalArgumentException("Cannot copy an individual into one of another graph");
+	  }
+	  System.arraycopy(genotype, 0, target.genotype, 0, genotype.length);
+	  target.unselectedCount = unselectedCount;
+	  target.bothSelectedCount = bothSelectedCount;
+	  target.weakEndpointCount = weakEndpointCount;
+	  target.uncoveredCount = uncoveredCount;
+	  if (target.repairNodes.length < repairNodesCount) {
+		target.repairNodes = new int[repairNodesCount];
 	  }
+	  System.arraycopy(repairNodes, 0, target.repairNodes, 0, repairNodesCount);
+	  target.repairNodesCount = repairNodesCount;
+	  target.fitness = fitness;
+	  target.moveNodesCount = -1;
+    }
 
+    /**
+     * Gets the number of times the fitness has been evaluated over the whole
+     * graph, which is once for every individual created from scratch. Copies
+     * and single flips do not count, neither do the covers evaluated only to
+     * be shown.
+     *
+     * @return number of full evaluations since the start
+     */
+    static long getEvaluationsCount() {
+	  return EVALUATIONS.sum();
     }
 
     /**
@@ -149,55 +260,241 @@ public final class Individual extends AbstractIndividual {
      * @return probability of a new individual replacing the old one
      */
     public double acceptanceProbability(double oldFitness, double newFitness, double temperature) {
-	  if (newFitness >= oldFitness) {
-		return 1.0;
-	  }
-
-	  // smaller the exponent (bigger difference in fitnesses or lower
-	  // temperature), smaller the chance
-	  double exponent = (newFitness - oldFitness) * 10 / temperature;
-	  double result = Math.exp(exponent);
-	  return result;
+	  return Annealer.acceptanceProbability(oldFitness, newFitness, temperature);
     }
 
     @Override
     public boolean isNodeSelected(int j) {
-	  return genotype.get(j);
+	  return (genotype[j >>> 6] & (1L << j)) != 0;
+    }
+
+    /**
+     * Adds a node to the vertex cover or removes it.
+     *
+     * @param j index of the node in the graph
+     * @param selected <code>true</code> to add the node
+     */
+    private void setNodeSelected(int j, boolean selected) {
+	  if (isNodeSelected(j) != selected) {
+		flip(j);
+	  }
+    }
+
+    @Override
+    public Graph getGraph() {
+	  return graph;
     }
 
     /**
      * Evaluate the value of the fitness function for the individual. After the
      * fitness is computed, the <code>getFitness</code> may be called
      * repeatedly, saving computation time.
+     *
+     * Every change of the genotype keeps the terms of the fitness function up
+     * to date, so this only puts them together.
      */
     @Override
     public void computeFitness() {
-	  this.fitness = 0;
-
-	  genotype.stream().filter((gene) -> (!gene)).forEach((_item) -> {
-		fitness += 10;
-	  });
-
-	  StateSpace.getEdges().stream().forEach((edge) -> {
-		if ((isNodeSelected(edge.getFromId())) && (isNodeSelected(edge.getToId()))) {
-		    // punish if both nodes are enabled
-		    fitness -= 2;
-		} else {
-		    // only one of them is enable
-		    // punish by tiny amount if the one with fewer edges is enabled
-		    List<Edge> from = StateSpace.getNode(edge.getFromId()).getEdges();
-		    List<Edge> to = StateSpace.getNode(edge.getToId()).getEdges();
-		    if (from.size() > to.size()) {
-			  if (isNodeSelected(edge.getToId())) {
-				fitness -= 0.8;
+	  fitness = fitness(unselectedCount, bothSelectedCount, weakEndpointCount);
+    }
+
+    /**
+     * Evaluates the fitness function for any vertex cover of a graph.
+     *
+     * @param graph graph the cover belongs to
+     * @param individual the vertex cover
+     * @return value of the fitness function
+     */
+    static double computeFitness(Graph graph, VertexCover individual) {
+	  int[] counts = countFitnessTerms(graph, individual);
+	  return fitness(counts[0], counts[1], counts[2]);
+    }
+
+    /**
+     * Counts what the fitness function rewards and punishes.
+     *
+     * @param graph graph the cover belongs to
+     * @param individual the vertex cover
+     * @return number of unselected nodes, of edges with both nodes selected
+     * and of edges covered only by the node with fewer edges
+     */
+    private static int[] countFitnessTerms(Graph graph, VertexCover individual) {
+	  int unselected = 0;
+	  int bothSelected = 0;
+	  int weakEndpoint = 0;
+
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  byte[] preferred = graph.getPreferredEndpoints();
+	  for (int u = 0; u < graph.nodesCount(); u++) {
+		boolean fromSelected = individual.isNodeSelected(u);
+		if (!fromSelected) {
+		    unselected++;
+		}
+		for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+		    int v = neighbors[k];
+		    if (v < u) {
+			  // the edge has already been visited from v
+			  continue;
+		    }
+		    boolean toSelected = individual.isNodeSelected(v);
+		    if (fromSelected && toSelected) {
+			  // punish if both nodes are enabled
+			  bothSelected++;
+		    } else if (preferred[k] == 1 ? toSelected : fromSelected) {
+			  // only one of them is enable
+			  // punish by tiny amount if the one with fewer edges is enabled
+			  weakEndpoint++;
+		    }
+		}
+	  }
+	  return new int[]{unselected, bothSelected, weakEndpoint};
+    }
+
+    /**
+     * Evaluates the fitness function from its terms.
+     *
+     * @param unselected number of nodes that are not selected
+     * @param bothSelected number of edges with both nodes selected
+     * @param weakEndpoint number of edges covered only by the node with fewer
+     * edges
+     * @return value of the fitness function
+     */
+    private static double fitness(int unselected, int bothSelected, int weakEndpoint) {
+	  return NODE_OFF_REWARD * unselected - BOTH_ON_PENALTY * bothSelected - WEAK_ENDPOINT_PENALTY * weakEndpoint;
+    }
+
+    /**
+     * Adds a node to the vertex cover or removes it, updating the fitness by
+     * looking only at the node's edges. The cover is not repaired, but a node
+     * that leaves edges uncovered is remembered for <code>repair</code>.
+     *
+     * @param j index of the node in the graph
+     */
+    public void flip(int j) {
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  byte[] preferred = graph.getPreferredEndpoints();
+	  boolean wasSelected = isNodeSelected(j);
+	  int uncovered = 0;
+	  for (int k = offsets[j]; k < offsets[j + 1]; k++) {
+		if (neighbors[k] == j) {
+		    // a self-loop is covered by both its ends or uncovered, like
+		    // countFitnessTerms counts it
+		    uncovered++;
+		    bothSelectedCount += wasSelected ? -1 : 1;
+		    continue;
+		}
+		boolean otherSelected = isNodeSelected(neighbors[k]);
+		if (!otherSelected) {
+		    uncovered++;
+		}
+		if (otherSelected) {
+		    // covered by both, or by the neighbour only
+		    if (wasSelected) {
+			  bothSelectedCount--;
+			  if (preferred[k] == 1) {
+				weakEndpointCount++;
 			  }
 		    } else {
-			  if (isNodeSelected(edge.getFromId())) {
-				fitness -= 0.8;
+			  bothSelectedCount++;
+			  if (preferred[k] == 1) {
+				weakEndpointCount--;
 			  }
 		    }
+		} else if (preferred[k] == 0) {
+		    // covered by this node only, or by none
+		    weakEndpointCount += wasSelected ? -1 : 1;
+		}
+	  }
+	  unselectedCount += wasSelected ? 1 : -1;
+	  if (wasSelected) {
+		uncoveredCount += uncovered;
+		if (uncovered > 0) {
+		    if (repairNodesCount == repairNodes.length) {
+			  repairNodes = Arrays.copyOf(repairNodes, Math.max(16, 2 * repairNodesCount));
+		    }
+		    repairNodes[repairNodesCount++] = j;
+		}
+	  } else {
+		uncoveredCount -= uncovered;
+	  }
+	  genotype[j >>> 6] ^= 1L << j;
+	  fitness = fitness(unselectedCount, bothSelectedCount, weakEndpointCount);
+	  if (moveNodesCount >= 0) {
+		if (moveNodesCount == moveNodes.length) {
+		    moveNodes = Arrays.copyOf(moveNodes, Math.max(16, 2 * moveNodesCount));
 		}
-	  });
+		moveNodes[moveNodesCount++] = j;
+	  }
+    }
+
+    /**
+     * Starts recording the flips of a move, so that it can be undone. The
+     * individual has to be repaired.
+     */
+    void beginMove() {
+	  moveNodesCount = 0;
+	  moveCounts[0] = unselectedCount;
+	  moveCounts[1] = bothSelectedCount;
+	  moveCounts[2] = weakEndpointCount;
+    }
+
+    /**
+     * Keeps the move and stops recording it.
+     */
+    void endMove() {
+	  moveNodesCount = -1;
+    }
+
+    /**
+     * Flips the bits of the move back and restores the counts from before
+     * it, without looking at any edges. The individual is as it was before
+     * the move, the move can still be redone.
+     */
+    void undoMove() {
+	  moveCounts[3] = unselectedCount;
+	  moveCounts[4] = bothSelectedCount;
+	  moveCounts[5] = weakEndpointCount;
+	  setMove(0);
+    }
+
+    /**
+     * Flips the bits of an undone move again and restores the counts from
+     * after it.
+     */
+    void redoMove() {
+	  setMove(3);
+    }
+
+    /**
+     * Flips the bits of the recorded move and sets the counts saved at the
+     * given index. A node flipped twice is flipped back twice, so the order
+     * does not matter.
+     *
+     * @param counts index of the saved counts in <code>moveCounts</code>
+     */
+    private void setMove(int counts) {
+	  for (int i = 0; i < moveNodesCount; i++) {
+		int j = moveNodes[i];
+		genotype[j >>> 6] ^= 1L << j;
+	  }
+	  unselectedCount = moveCounts[counts];
+	  bothSelectedCount = moveCounts[counts + 1];
+	  weakEndpointCount = moveCounts[counts + 2];
+	  // the cover is whole before and after a move
+	  uncoveredCount = 0;
+	  repairNodesCount = 0;
+	  fitness = fitness(unselectedCount, bothSelectedCount, weakEndpointCount);
+    }
+
+    /**
+     * Gets the random numbers of the individual.
+     *
+     * @return the individual's own random stream
+     */
+    SplittableRandom getRandom() {
+	  return random;
     }
 
     /**
@@ -217,47 +514,89 @@ public final class Individual extends AbstractIndividual {
      * This function should be called every time we make a change to the
      * genotype (mutate, crossover, init, etc.). If an edge is not covered, turn
      * on the node with more edges.
+     *
+     * Only the edges of the nodes turned off since the last repair are
+     * visited, and nothing at all when every edge is covered.
      */
     public void repair() {
-	  StateSpace.getEdges().stream().filter((edge) -> (!(isNodeSelected(edge.getFromId()))
-		    && !(isNodeSelected(edge.getToId())))).forEach((edge) -> {
-			  // turn the one with more edges on
-			  List<Edge> from = StateSpace.getNode(edge.getFromId()).getEdges();
-			  List<Edge> to = StateSpace.getNode(edge.getToId()).getEdges();
-			  if (from.size() > to.size()) {
-				genotype.set(edge.getFromId(), Boolean.TRUE);
-			  } else {
-				genotype.set(edge.getToId(), Boolean.TRUE);
-			  }
-		    });
-	  computeFitness();
+	  while (uncoveredCount > 0 && repairNodesCount > 0) {
+		repairAround(repairNodes[--repairNodesCount]);
+	  }
+	  repairNodesCount = 0;
+	  if (repairNodes.length > graph.nodesCount()) {
+		// the stack is kept for the next changes, the individuals are
+		// reused; only a stack of repeated nodes is not worth keeping, it
+		// is cut back to one entry per node, the size it starts with
+		repairNodes = new int[graph.nodesCount()];
+	  }
+    }
+
+    /**
+     * Covers the edges of a node that are not covered, turning on the node
+     * with more edges like <code>repair</code> does. Only the node's edges are
+     * visited, so this is enough after the node has been flipped.
+     *
+     * @param j index of the node in the graph
+     */
+    private void repairAround(int j) {
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  byte[] preferred = graph.getPreferredEndpoints();
+	  for (int k = offsets[j]; k < offsets[j + 1] && !isNodeSelected(j); k++) {
+		int v = neighbors[k];
+		if (!isNodeSelected(v)) {
+		    flip(preferred[k] == 1 ? j : v);
+		}
+	  }
     }
 
     /**
      * Does random changes in the individual's genotype, taking mutation
      * probability into account.
      *
+     * Every gene is flipped with the given probability, independently, so the
+     * number of genes between two flips has a geometric distribution. Drawing
+     * those gaps instead of a number for every gene costs one draw per flip.
+     * Only the neighbourhoods of the flipped nodes are repaired afterwards.
+     *
      * @param mutationRate Probability of a bit being inverted, i.e. a node
      * being added to/removed from the vertex cover.
      */
     @Override
     public void mutate(double mutationRate) {
-
-	  Random r = new Random();
-	  for (int i = 0; i < genotype.size(); i++) {
-		boolean result = r.nextDouble() < mutationRate;
-		if (genotype.get(i) != result) {
-		    genotype.set(i, result);
+	  if (mutationRate >= 1) {
+		for (int i = 0; i < graph.nodesCount(); i++) {
+		    flip(i);
+		}
+	  } else if (mutationRate > 0) {
+		double logKeep = Math.log1p(-mutationRate);
+		long i = geometricGap(logKeep);
+		while (i < graph.nodesCount()) {
+		    flip((int) i);
+		    i += 1 + geometricGap(logKeep);
 		}
 	  }
 	  repair();
     }
 
+    /**
+     * Draws the number of genes kept before the next flipped one.
+     *
+     * @param logKeep logarithm of the probability of a gene not being flipped
+     * @return number of genes to skip
+     */
+    private long geometricGap(double logKeep) {
+	  // 1 - nextDouble() is in (0, 1], so the logarithm is finite; a gap past
+	  // every graph is as good as any longer one and cannot overflow
+	  return (long) Math.min(Math.log(1 - random.nextDouble()) / logKeep, Integer.MAX_VALUE);
+    }
+
     /**
      * Crosses the current individual over with other individual given as a
      * parameter, yielding a pair of offsprings.
      *
-     * Algorithm will run 3-8 point crossover.
+     * The offspring swap a region of neighbouring nodes, see
+     * <code>Crossover.REGION</code>.
      *
      * @param other The other individual to be crossed over with
      * @return A couple of offspring individuals
@@ -268,48 +607,9 @@ public final class Individual extends AbstractIndividual {
 	  Pair<Individual, Individual> result = new Pair();
 	  Individual y = (Individual) other;
 
-	  Random r = new Random();
-	  int random = r.nextInt(5);
-	  random += 3; // 3-8 points of crossover
-
-	  Individual crossOne = new Individual(evolution, true);
-	  Individual crossTwo = new Individual(evolution, true);
-
-	  int split = this.genotype.size() / random;
-	  for (int i = 0; i < random; i++) {
-		int upperBound;
-		if ((i - 1) == random) {
-		    upperBound = this.genotype.size() + 1;
-		} else {
-		    upperBound = (split * (i + 1));
-		}
-
-		for (int j = (split * i); j < upperBound; j++) {
-		    if (i % 2 == 0) {
-			  crossOne.genotype.set(i, this.genotype.get(i));
-			  crossTwo.genotype.set(i, y.genotype.get(i));
-		    } else {
-			  crossOne.genotype.set(i, y.genotype.get(i));
-			  crossTwo.genotype.set(i, this.genotype.get(i));
-		    }
-		}
-	  }
-
-	  /*
-	   // one-point crossover
-	   // doesnt work that well
-	   for (int i = 0; i < this.genotype.size(); i++) {
-	   if(i < this.genotype.size() / random) {
-	   crossOne.genotype.set(i, this.genotype.get(i));
-	   crossTwo.genotype.set(i, y.genotype.get(i));
-	   } else {
-	   crossOne.genotype.set(i, y.genotype.get(i));
-	   crossTwo.genotype.set(i, this.genotype.get(i));
-	   }
-	   }
-	   */
-	  crossOne.repair();
-	  crossTwo.repair();
+	  Individual crossOne = new Individual(this, random.split());
+	  Individual crossTwo = new Individual(y, random.split());
+	  Crossover.REGION.cross(this, y, crossOne, crossTwo, random);
 
 	  result.a = crossOne;
 	  result.b = crossTwo;
@@ -317,22 +617,43 @@ public final class Individual extends AbstractIndividual {
 	  return result;
     }
 
+    /**
+     * Gets the number of 64-bit words of the genotype.
+     *
+     * @return length of the genotype in words
+     */
+    int genotypeWords() {
+	  return genotype.length;
+    }
+
+    /**
+     * Takes the genes under a mask of one word of the genotype from another
+     * individual. Only the genes that differ are flipped, the individual has
+     * to be repaired afterwards.
+     *
+     * @param source the individual to take the genes from
+     * @param w index of the word
+     * @param mask the genes of the word to take
+     */
+    void takeGenes(Individual source, int w, long mask) {
+	  long differ = (genotype[w] ^ source.genotype[w]) & mask;
+	  while (differ != 0) {
+		flip((w << 6) + Long.numberOfTrailingZeros(differ));
+		differ &= differ - 1;
+	  }
+    }
+
     /**
      * When you are changing an individual (ie at crossover) you probably don't
      * want to affect the old one (you don't want to destruct it). So you have
      * to implement "deep copy" of this object.
      *
+     * @param random random numbers of the copy
      * @return identical individual
      */
     @Override
-    public Individual deepCopy() {
-	  Individual newOne = new Individual(evolution, true);
-
-	  for (int i = 0; i < this.genotype.size(); i++) {
-		newOne.genotype.set(i, this.genotype.get(i));
-	  }
-	  newOne.fitness = this.fitness;
-	  return newOne;
+    public Individual deepCopy(SplittableRandom random) {
+	  return new Individual(this, random);
     }
 
     /**
@@ -346,7 +667,14 @@ public final class Individual extends AbstractIndividual {
      */
     public int getHammingDistance(AbstractIndividual other) {
 	  int distance = 0;
-	  for (int i = 0; i < genotype.size(); i++) {
+	  if (other instanceof Individual) {
+		long[] otherGenotype = ((Individual) other).genotype;
+		for (int w = 0; w < genotype.length; w++) {
+		    distance += Long.bitCount(genotype[w] ^ otherGenotype[w]);
+		}
+		return distance;
+	  }
+	  for (int i = 0; i < graph.nodesCount(); i++) {
 		if (isNodeSelected(i) != other.isNodeSelected(i)) {
 		    distance++;
 		}
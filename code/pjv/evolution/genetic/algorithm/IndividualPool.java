@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.genetic.algorithm;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Individuals of one component that are not part of any population at the
+ * moment. Breeding takes its offspring from here and the generation that has
+ * been replaced is given back, so once the pool has filled up a generation
+ * does not allocate any genotypes.
+ *
+ * The pool is not synchronized, every component has its own.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class IndividualPool {
+
+    /**
+     * The individuals that are free to be reused.
+     */
+    private Individual[] free = new Individual[16];
+
+    /**
+     * Number of individuals in <code>free</code>.
+     */
+    private int freeCount = 0;
+
+    /**
+     * Most individuals the pool keeps, the others are left to the garbage
+     * collector.
+     */
+    private final int capacity;
+
+    /**
+     * Random numbers the streams of new individuals are split from.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity most individuals the pool keeps
+     * @param random random numbers of the component the pool belongs to
+     */
+    IndividualPool(int capacity, SplittableRandom random) {
+	  this.capacity = capacity;
+	  this.random = random;
+    }
+
+    /**
+     * Gets a copy of an individual, reusing a free one if there is any. A new
+     * one gets a stream split from the pool's, a reused one keeps its own.
+     *
+     * @param source the individual to copy
+     * @return an individual equal to the source
+     */
+    Individual copyOf(Individual source) {
+	  if (freeCount == 0) {
+		return new Individual(source, random.split());
+	  }
+	  Individual individual = free[--freeCount];
+	  free[freeCount] = null;
+	  source.copyInto(individual);
+	  return individual;
+    }
+
+    /**
+     * Gives an individual back to the pool. It must not be used afterwards,
+     * it will be overwritten by the next copy.
+     *
+     * @param individual the individual no longer in use
+     */
+    void release(Individual individual) {
+	  if (freeCount == capacity) {
+		return;
+	  }
+	  if (freeCount == free.length) {
+		free = Arrays.copyOf(free, Math.min(capacity, 2 * free.length));
+	  }
+	  free[freeCount++] = individual;
+    }
+}
@@ -24,11 +24,13 @@
 package pjv.evolution.genetic.algorithm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import pjv.evolution.genetic.AbstractEvolution;
 import pjv.evolution.genetic.AbstractIndividual;
 import pjv.evolution.genetic.AbstractPopulation;
+import pjv.evolution.util.Graph;
 
 /**
  * Concrete implementation of population of individuals used by the evolutionary
@@ -39,15 +41,22 @@ import pjv.evolution.genetic.AbstractPopulation;
 public class Population extends AbstractPopulation {
 
     /**
-     * Initialize a population in the evolution. Not randomly.
+     * Initialize a population in the evolution. Not randomly, every
+     * individual is annealed from the greedy cover.
      *
      * @param evolution current evolution reference
+     * @param graph graph of the map the individuals encode
      * @param size size of population
+     * @param random random numbers of the population, every individual gets
+     * a stream split from it
+     * @param seeding the annealing of the individuals
      */
-    public Population(AbstractEvolution evolution, int size) {
+    public Population(AbstractEvolution evolution, Graph graph, int size, SplittableRandom random, Annealer seeding) {
+	  this.graph = graph;
 	  individuals = new Individual[size];
 	  for (int i = 0; i < individuals.length; i++) {
-		individuals[i] = new Individual(evolution, false);
+		individuals[i] = new Individual(evolution, graph, false, random.split());
+		seeding.anneal((Individual) individuals[i]);
 		individuals[i].computeFitness();
 	  }
     }
@@ -61,31 +70,49 @@ public class Population extends AbstractPopulation {
      * fitness in population)
      *
      * @param count The number of individuals to be selected
+     * @param random the random numbers to select by
      * @return List of selected individuals
      */
-    public List<AbstractIndividual> selectIndividuals(int count) {
-	  ArrayList<AbstractIndividual> selected = new ArrayList<>();
+    public List<AbstractIndividual> selectIndividuals(int count, SplittableRandom random) {
+	  AbstractIndividual[] selected = new AbstractIndividual[count];
+	  selectIndividuals(random, selected);
+	  return new ArrayList<>(Arrays.asList(selected));
+    }
 
-	  Random r = new Random();
-	  // find best individual and calculate the sum of individuals' fitnesses
-	  AbstractIndividual best = this.individuals[0];
+    /**
+     * Selects individuals into an array given by the caller, by the roulette
+     * wheel selection, so that breeding does not allocate a list for every
+     * pair of parents.
+     *
+     * The fitness of a kernel can be negative, and the wheel would then
+     * favour the worst individuals. When it is, the weights are shifted by
+     * the lowest fitness, so the worst individual gets no share of the
+     * wheel; when all the weights are 0, the selection is uniform.
+     *
+     * @param r the random generator to use
+     * @param selected filled with the selected individuals
+     */
+    void selectIndividuals(SplittableRandom r, AbstractIndividual[] selected) {
+	  // calculate the sum of individuals' fitnesses, shifted to be positive
+	  double lowestFitness = 0.0;
+	  for (AbstractIndividual individual : this.individuals) {
+		lowestFitness = Math.min(lowestFitness, individual.getFitness());
+	  }
 	  double totalFitness = 0.0;
 	  for (AbstractIndividual individual : this.individuals) {
-		totalFitness += individual.getFitness();
-		if (individual.getFitness() > best.getFitness()) {
-		    best = individual;
-		}
+		totalFitness += individual.getFitness() - lowestFitness;
 	  }
 
 	  int index;
-	  while (selected.size() < count) {
+	  for (int i = 0; i < selected.length; i++) {
 		while (true) {
 		    index = (r.nextInt(individuals.length));
-		    if (r.nextDouble() < (individuals[index].getFitness() / totalFitness)) {
+		    if (!(totalFitness > 0)
+				|| r.nextDouble() < ((individuals[index].getFitness() - lowestFitness) / totalFitness)) {
 			  break;
 		    }
 		}
-		selected.add(individuals[index]);
+		selected[i] = individuals[index];
 	  }
 
 	  /**
@@ -131,6 +158,19 @@ public class Population extends AbstractPopulation {
 	   individual = individuals[r.nextInt(individuals.length)];
 	   }
 	   */
-	  return selected;
+    }
+
+    /**
+     * Replaces all the individuals at once, with the array of the next
+     * generation.
+     *
+     * @param next individuals of the next generation, as many as there are in
+     * the population
+     * @return the array of the replaced individuals
+     */
+    AbstractIndividual[] swapIndividuals(AbstractIndividual[] next) {
+	  AbstractIndividual[] previous = individuals;
+	  individuals = next;
+	  return previous;
     }
 }
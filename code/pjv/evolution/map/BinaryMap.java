@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import pjv.evolution.util.Graph;
+
+/**
+ * Compact binary form of a map, used as a cache of the parsed text files.
+ * The text files stay the format maps are exchanged in.
+ *
+ * The file is little-endian and consists of
+ * <ul>
+ * <li>a header of six ints: magic number, format version, number of nodes,
+ * number of edges, number of self-loops and of duplicate edges dropped while
+ * the text was parsed,</li>
+ * <li>X and Y coordinates of the nodes as doubles,</li>
+ * <li>the edge list as two int arrays, from and to,</li>
+ * <li>the CSR adjacency as two int arrays, offsets and neighbours.</li>
+ * </ul>
+ * The arrays are copied straight out of the mapped file, nothing is parsed.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class BinaryMap {
+
+    /**
+     * Name of the binary file in the map's directory.
+     */
+    public static final String FILE_NAME = "graph.bin";
+
+    /**
+     * First four bytes of the file, "PJVG".
+     */
+    private static final int MAGIC = 0x47564A50;
+
+    /**
+     * Version of the format, files of other versions are ignored. Version 2
+     * has the edges in the canonical order of <code>MapLoader</code>.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Size of the header in bytes. It keeps the doubles that follow aligned.
+     */
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    /**
+     * Size of the buffer used for writing.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The graph of the map.
+     */
+    private final Graph graph;
+
+    /**
+     * Number of self-loops dropped while the text was parsed.
+     */
+    private final int selfLoopsRemoved;
+
+    /**
+     * Number of duplicate edges dropped while the text was parsed.
+     */
+    private final int duplicateEdgesRemoved;
+
+    /**
+     * Creates the binary form of a map.
+     *
+     * @param graph the graph of the map
+     * @param selfLoopsRemoved number of self-loops dropped while the text was
+     * parsed
+     * @param duplicateEdgesRemoved number of duplicate edges dropped while the
+     * text was parsed
+     */
+    public BinaryMap(Graph graph, int selfLoopsRemoved, int duplicateEdgesRemoved) {
+	  this.graph = graph;
+	  this.selfLoopsRemoved = selfLoopsRemoved;
+	  this.duplicateEdgesRemoved = duplicateEdgesRemoved;
+    }
+
+    /**
+     * Reads a binary map file. The file is mapped into memory and the arrays
+     * of the graph are copied out of it in bulk.
+     *
+     * @param file path to the file
+     * @return the map
+     * @throws IOException if the file cannot be read or is not a valid binary
+     * map of the current version
+     */
+    public static BinaryMap read(Path file) throws IOException {
+	  try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+		long size = channel.size();
+		if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+		    throw new IOException("Not a binary map: " + file);
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+		    throw new IOException("Not a binary map: " + file);
+		}
+		int nodesCount = buffer.getInt();
+		int edgesCount = buffer.getInt();
+		int selfLoops = buffer.getInt();
+		int duplicates = buffer.getInt();
+		if (nodesCount < 0 || edgesCount < 0 || size != fileSize(nodesCount, edgesCount)) {
+		    throw new IOException("Corrupted binary map: " + file);
+		}
+
+		double[] pointX = new double[nodesCount];
+		double[] pointY = new double[nodesCount];
+		int[] edgeFrom = new int[edgesCount];
+		int[] edgeTo = new int[edgesCount];
+		int[] offsets = new int[nodesCount + 1];
+		int[] neighbors = new int[2 * edgesCount];
+		buffer.asDoubleBuffer().get(pointX);
+		buffer.position(buffer.position() + Double.BYTES * nodesCount);
+		buffer.asDoubleBuffer().get(pointY);
+		buffer.position(buffer.position() + Double.BYTES * nodesCount);
+		for (int[] array : new int[][]{edgeFrom, edgeTo, offsets, neighbors}) {
+		    buffer.asIntBuffer().get(array);
+		    buffer.position(buffer.position() + Integer.BYTES * array.length);
+		}
+
+		if (!isValid(nodesCount, edgeFrom, edgeTo, offsets, neighbors)) {
+		    throw new IOException("Corrupted binary map: " + file);
+		}
+		Graph graph = Graph.fromAdjacency(pointX, pointY, edgeFrom, edgeTo, offsets, neighbors);
+		return new BinaryMap(graph, selfLoops, duplicates);
+	  }
+    }
+
+    /**
+     * Writes the map into a binary file. The file is written under a
+     * temporary name first and then moved in place, so that a reader never
+     * sees it half written. Only a small buffer is used, so a map that only
+     * just fits in memory can be written as well.
+     *
+     * @param file path to the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+	  int nodesCount = graph.nodesCount();
+	  int edgesCount = graph.edgesCount();
+	  ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+	  buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+	  Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+	  try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+		    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(nodesCount).putInt(edgesCount);
+		buffer.putInt(selfLoopsRemoved).putInt(duplicateEdgesRemoved);
+		for (int i = 0; i < nodesCount; i++) {
+		    reserve(channel, buffer, Double.BYTES).putDouble(graph.getPointX(i));
+		}
+		for (int i = 0; i < nodesCount; i++) {
+		    reserve(channel, buffer, Double.BYTES).putDouble(graph.getPointY(i));
+		}
+		for (int e = 0; e < edgesCount; e++) {
+		    reserve(channel, buffer, Integer.BYTES).putInt(graph.getEdgeFrom(e));
+		}
+		for (int e = 0; e < edgesCount; e++) {
+		    reserve(channel, buffer, Integer.BYTES).putInt(graph.getEdgeTo(e));
+		}
+		for (int offset : graph.getOffsets()) {
+		    reserve(channel, buffer, Integer.BYTES).putInt(offset);
+		}
+		for (int neighbor : graph.getNeighbors()) {
+		    reserve(channel, buffer, Integer.BYTES).putInt(neighbor);
+		}
+		reserve(channel, buffer, WRITE_BUFFER_SIZE);
+	  }
+	  Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Makes room in the write buffer, writing out its contents if there is
+     * not enough space left.
+     *
+     * @param channel the file being written
+     * @param buffer the write buffer
+     * @param bytes number of bytes needed
+     * @return the buffer
+     * @throws IOException if the file cannot be written
+     */
+    private static ByteBuffer reserve(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+	  if (buffer.remaining() < bytes) {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+		    channel.write(buffer);
+		}
+		buffer.clear();
+	  }
+	  return buffer;
+    }
+
+    /**
+     * Computes the size of a binary map file.
+     *
+     * @param nodesCount number of nodes
+     * @param edgesCount number of edges
+     * @return size of the file in bytes
+     */
+    private static long fileSize(int nodesCount, int edgesCount) {
+	  return HEADER_SIZE + 2L * Double.BYTES * nodesCount
+		    + 2L * Integer.BYTES * edgesCount
+		    + Integer.BYTES * (nodesCount + 1L)
+		    + 2L * Integer.BYTES * edgesCount;
+    }
+
+    /**
+     * Checks that the arrays read from a file describe a graph, so that a
+     * damaged file cannot make the evolution fail later on.
+     *
+     * @param nodesCount number of nodes
+     * @param edgeFrom ids of the nodes the edges lead from
+     * @param edgeTo ids of the nodes the edges lead to
+     * @param offsets start of each node's neighbours
+     * @param neighbors concatenated adjacency lists
+     * @return <code>true</code> if all the ids and offsets are in range
+     */
+    private static boolean isValid(int nodesCount, int[] edgeFrom, int[] edgeTo, int[] offsets, int[] neighbors) {
+	  for (int e = 0; e < edgeFrom.length; e++) {
+		if (edgeFrom[e] < 0 || edgeFrom[e] >= nodesCount || edgeTo[e] < 0 || edgeTo[e] >= nodesCount) {
+		    return false;
+		}
+	  }
+	  if (offsets[0] != 0 || offsets[nodesCount] != neighbors.length) {
+		return false;
+	  }
+	  for (int i = 0; i < nodesCount; i++) {
+		if (offsets[i + 1] < offsets[i]) {
+		    return false;
+		}
+	  }
+	  for (int v : neighbors) {
+		if (v < 0 || v >= nodesCount) {
+		    return false;
+		}
+	  }
+	  return true;
+    }
+
+    /**
+     * Gets the graph of the map.
+     *
+     * @return the graph
+     */
+    public Graph getGraph() {
+	  return graph;
+    }
+
+    /**
+     * Gets the number of self-loops dropped while the text was parsed.
+     *
+     * @return number of removed self-loops
+     */
+    public int getSelfLoopsRemoved() {
+	  return selfLoopsRemoved;
+    }
+
+    /**
+     * Gets the number of duplicate edges dropped while the text was parsed.
+     *
+     * @return number of removed duplicate edges
+     */
+    public int getDuplicateEdgesRemoved() {
+	  return duplicateEdgesRemoved;
+    }
+
+    /**
+     * Converts the text files of maps into binary map files stored next to
+     * them.
+     *
+     * @param args names of the maps' directories in the "maps" directory
+     * @throws IOException if a binary file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+	  for (String dir : args) {
+		Path file = MapLoader.convert(dir);
+		System.out.println("Map " + dir + " converted to " + file + " (" + Files.size(file) + " B)");
+	  }
+    }
+}
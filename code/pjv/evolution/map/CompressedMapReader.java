@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reader of gzip-compressed map text files. The files are decompressed
+ * through a fixed-size buffer and every newline-aligned block is parsed right
+ * away into growing arrays, so nothing is unpacked to the disk and the text
+ * is never held in memory as a whole. The nodes are read on a thread of their
+ * own while the edges are read on the calling thread.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class CompressedMapReader {
+
+    /**
+     * Suffix of the compressed map files.
+     */
+    static final String SUFFIX = ".gz";
+
+    /**
+     * Size of the buffer of the decompressed text. It grows only for a line
+     * longer than that.
+     */
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    /**
+     * Size of the buffer of the compressed data.
+     */
+    private static final int INFLATER_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * File with the nodes.
+     */
+    private final Path nodesFile;
+
+    /**
+     * File with the edges.
+     */
+    private final Path edgesFile;
+
+    /**
+     * Receives the progress after every block.
+     */
+    private final MapLoadListener listener;
+
+    /**
+     * Thread that reads the map, interrupting it cancels both reads.
+     */
+    private Thread owner;
+
+    /**
+     * Number of compressed bytes read so far from both files.
+     */
+    private long bytesRead = 0;
+
+    /**
+     * Size of both files.
+     */
+    private long bytesTotal = 0;
+
+    /**
+     * X coordinates of the nodes read so far.
+     */
+    private double[] pointX = new double[1024];
+
+    /**
+     * Y coordinates of the nodes read so far.
+     */
+    private double[] pointY = new double[1024];
+
+    /**
+     * Number of nodes read so far.
+     */
+    private int nodesCount = 0;
+
+    /**
+     * Ids the edges read so far lead from.
+     */
+    private int[] edgeFrom = new int[1024];
+
+    /**
+     * Ids the edges read so far lead to.
+     */
+    private int[] edgeTo = new int[1024];
+
+    /**
+     * Number of edges read so far.
+     */
+    private int edgesCount = 0;
+
+    /**
+     * Prepares the reading of a map. A file without the <code>.gz</code>
+     * suffix is read as it is.
+     *
+     * @param nodesFile file with the nodes
+     * @param edgesFile file with the edges
+     * @param listener receives the progress after every block
+     */
+    CompressedMapReader(Path nodesFile, Path edgesFile, MapLoadListener listener) {
+	  this.nodesFile = nodesFile;
+	  this.edgesFile = edgesFile;
+	  this.listener = listener;
+    }
+
+    /**
+     * Reads the map.
+     *
+     * @throws IOException if a file cannot be read
+     * @throws InterruptedIOException if the thread has been interrupted, the
+     * interrupt status stays set
+     */
+    void read() throws IOException {
+	  owner = Thread.currentThread();
+	  bytesTotal = Files.size(nodesFile) + Files.size(edgesFile);
+
+	  FutureTask<Void> nodes = new FutureTask<>(() -> {
+		forEachBlock(nodesFile, this::addNodes);
+		return null;
+	  });
+	  Thread thread = new Thread(nodes, "Map nodes");
+	  thread.setDaemon(true);
+	  thread.start();
+	  try {
+		forEachBlock(edgesFile, this::addEdges);
+		nodes.get();
+	  } catch (InterruptedException ex) {
+		owner.interrupt();
+		throw new InterruptedIOException("Loading interrupted: " + nodesFile);
+	  } catch (ExecutionException ex) {
+		Throwable cause = ex.getCause();
+		if (cause instanceof IOException) {
+		    throw (IOException) cause;
+		}
+		if (cause instanceof Error) {
+		    throw (Error) cause;
+		}
+		throw new IllegalStateException("Reading of " + nodesFile + " failed", cause);
+	  } finally {
+		nodes.cancel(true);
+	  }
+    }
+
+    /**
+     * Parses a block of the nodes file.
+     *
+     * @param parser parser of the block
+     */
+    private void addNodes(TextMapParser parser) {
+	  int records = parser.recordsCount();
+	  if (nodesCount + records > pointX.length) {
+		int capacity = Math.max(nodesCount + records, pointX.length * 2);
+		pointX = Arrays.copyOf(pointX, capacity);
+		pointY = Arrays.copyOf(pointY, capacity);
+	  }
+	  parser.parseNodes(pointX, pointY, nodesCount);
+	  nodesCount += records;
+    }
+
+    /**
+     * Parses a block of the edges file.
+     *
+     * @param parser parser of the block
+     */
+    private void addEdges(TextMapParser parser) {
+	  int records = parser.recordsCount();
+	  if (edgesCount + records > edgeFrom.length) {
+		int capacity = Math.max(edgesCount + records, edgeFrom.length * 2);
+		edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+		edgeTo = Arrays.copyOf(edgeTo, capacity);
+	  }
+	  parser.parseEdges(edgeFrom, edgeTo, edgesCount);
+	  edgesCount += records;
+    }
+
+    /**
+     * Decompresses a file block by block, every block ending with a whole
+     * line.
+     *
+     * @param file the file
+     * @param action what to do with each block
+     * @throws IOException if the file cannot be read
+     */
+    private void forEachBlock(Path file, TextBlockReader.BlockAction action) throws IOException {
+	  try (FileChannel channel = FileChannel.open(file)) {
+		InputStream raw = Channels.newInputStream(channel);
+		InputStream in = file.toString().endsWith(SUFFIX) ? new GZIPInputStream(raw, INFLATER_BUFFER_SIZE) : raw;
+		long[] reported = {0};
+		new TextBlockReader(BUFFER_SIZE).forEachBlock(in, file, (parser) -> {
+		    if (owner.isInterrupted()) {
+			  // the nodes are read on another thread
+			  throw new InterruptedIOException("Loading interrupted: " + file);
+		    }
+		    action.accept(parser);
+		    progress(channel.position() - reported[0]);
+		    reported[0] = channel.position();
+		});
+		progress(channel.position() - reported[0]);
+	  }
+    }
+
+    /**
+     * Reports the progress of both reads.
+     *
+     * @param bytes number of compressed bytes read since the last report of
+     * the same file
+     */
+    private synchronized void progress(long bytes) {
+	  bytesRead += bytes;
+	  listener.progress(bytesRead, bytesTotal, nodesCount, edgesCount);
+    }
+
+    /**
+     * Gets the X coordinates of the nodes.
+     *
+     * @return array at least <code>getNodesCount()</code> long
+     */
+    double[] getPointX() {
+	  return pointX;
+    }
+
+    /**
+     * Gets the Y coordinates of the nodes.
+     *
+     * @return array at least <code>getNodesCount()</code> long
+     */
+    double[] getPointY() {
+	  return pointY;
+    }
+
+    /**
+     * Gets the number of nodes read.
+     *
+     * @return number of nodes
+     */
+    int getNodesCount() {
+	  return nodesCount;
+    }
+
+    /**
+     * Gets the ids the edges lead from.
+     *
+     * @return array at least <code>getEdgesCount()</code> long
+     */
+    int[] getEdgeFrom() {
+	  return edgeFrom;
+    }
+
+    /**
+     * Gets the ids the edges lead to.
+     *
+     * @return array at least <code>getEdgesCount()</code> long
+     */
+    int[] getEdgeTo() {
+	  return edgeTo;
+    }
+
+    /**
+     * Gets the number of edges read, including self-loops and duplicates.
+     *
+     * @return number of edges
+     */
+    int getEdgesCount() {
+	  return edgesCount;
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.NodeOrdering;
+
+/**
+ * Cache of fully built map graphs, so that selecting a map again does not
+ * read it again. A graph is found by the map's directory, the ordering of its
+ * nodes and the modification time and size of the map's files, so a map that
+ * has changed on disk is loaded again. The least recently used graphs are
+ * dropped once their total size exceeds the budget.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class MapCache {
+
+    /**
+     * The cache <code>MapLoader</code> uses.
+     */
+    private static final MapCache DEFAULT = new MapCache(Runtime.getRuntime().maxMemory() / 4);
+
+    /**
+     * Cached maps from the least recently used one.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Largest total size of the cached graphs in bytes.
+     */
+    private long budget;
+
+    /**
+     * Total size of the cached graphs in bytes.
+     */
+    private long size = 0;
+
+    /**
+     * Number of maps found in the cache.
+     */
+    private long hits = 0;
+
+    /**
+     * Number of maps not found in the cache.
+     */
+    private long misses = 0;
+
+    /**
+     * Number of maps dropped to stay within the budget.
+     */
+    private long evictions = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param budget largest total size of the cached graphs in bytes, 0 turns
+     * the cache off
+     */
+    public MapCache(long budget) {
+	  this.budget = budget;
+    }
+
+    /**
+     * Gets the cache <code>MapLoader</code> uses. Its budget is a quarter of
+     * the maximum heap size to start with.
+     *
+     * @return the shared cache
+     */
+    public static MapCache getDefault() {
+	  return DEFAULT;
+    }
+
+    /**
+     * Changes the budget, dropping the least recently used maps if the cached
+     * ones do not fit in it.
+     *
+     * @param budget largest total size of the cached graphs in bytes, 0 turns
+     * the cache off
+     */
+    public synchronized void setBudget(long budget) {
+	  this.budget = budget;
+	  evict();
+    }
+
+    /**
+     * Drops all the cached maps. The statistics are kept.
+     */
+    public synchronized void clear() {
+	  entries.clear();
+	  size = 0;
+    }
+
+    /**
+     * Gets the current statistics of the cache.
+     *
+     * @return statistics at this moment
+     */
+    public synchronized Stats getStats() {
+	  return new Stats(hits, misses, evictions, entries.size(), size, budget);
+    }
+
+    /**
+     * Looks up a map and marks it as recently used.
+     *
+     * @param key the map's key
+     * @return the cached map, <code>null</code> if it is not cached
+     */
+    synchronized Entry get(Key key) {
+	  Entry entry = entries.get(key);
+	  if (entry != null) {
+		hits++;
+	  } else {
+		misses++;
+	  }
+	  return entry;
+    }
+
+    /**
+     * Stores a map, dropping the least recently used ones if it does not fit
+     * in the budget otherwise. A map bigger than the whole budget is not
+     * stored.
+     *
+     * @param key the map's key
+     * @param entry the map
+     */
+    synchronized void put(Key key, Entry entry) {
+	  if (entry.bytes > budget) {
+		return;
+	  }
+	  Entry old = entries.put(key, entry);
+	  if (old != null) {
+		size -= old.bytes;
+	  }
+	  size += entry.bytes;
+	  evict();
+    }
+
+    /**
+     * Drops the least recently used maps until the rest fits in the budget.
+     */
+    private void evict() {
+	  Iterator<Entry> eldest = entries.values().iterator();
+	  while (size > budget && eldest.hasNext()) {
+		size -= eldest.next().bytes;
+		eldest.remove();
+		evictions++;
+	  }
+    }
+
+    /**
+     * Identifies a map on disk in a given state.
+     */
+    static final class Key {
+
+	  /**
+	   * Map's directory name in the "maps" directory.
+	   */
+	  private final String dir;
+
+	  /**
+	   * Ordering of the nodes.
+	   */
+	  private final NodeOrdering ordering;
+
+	  /**
+	   * Modification time and size of each of the map's files, -1 for a
+	   * missing file.
+	   */
+	  private final long[] stamps;
+
+	  /**
+	   * Creates the key.
+	   *
+	   * @param dir map's directory name in the "maps" directory
+	   * @param ordering ordering of the nodes
+	   * @param stamps modification times and sizes of the map's files
+	   */
+	  private Key(String dir, NodeOrdering ordering, long[] stamps) {
+		this.dir = dir;
+		this.ordering = ordering;
+		this.stamps = stamps;
+	  }
+
+	  /**
+	   * Creates the key of a map as it is on disk now. The text files
+	   * identify the map, the binary file only if there are no text files,
+	   * because it is rewritten whenever the text is parsed.
+	   *
+	   * @param dir map's directory name in the "maps" directory
+	   * @param ordering ordering of the nodes
+	   * @return the key
+	   */
+	  static Key of(String dir, NodeOrdering ordering) {
+		long[] stamps = new long[4];
+		stamp(MapLoader.textFile(Paths.get("maps", dir), "nodes"), stamps, 0);
+		stamp(MapLoader.textFile(Paths.get("maps", dir), "edges"), stamps, 2);
+		if (stamps[1] < 0 && stamps[3] < 0) {
+		    stamp(Paths.get("maps", dir, BinaryMap.FILE_NAME), stamps, 0);
+		}
+		return new Key(dir, ordering, stamps);
+	  }
+
+	  /**
+	   * Stores the modification time and the size of a file.
+	   *
+	   * @param file the file
+	   * @param stamps where to store them
+	   * @param index index of the modification time, the size goes next
+	   */
+	  private static void stamp(Path file, long[] stamps, int index) {
+		try {
+		    stamps[index] = Files.getLastModifiedTime(file).toMillis();
+		    stamps[index + 1] = Files.size(file);
+		} catch (IOException ex) {
+		    stamps[index] = -1;
+		    stamps[index + 1] = -1;
+		}
+	  }
+
+	  @Override
+	  public boolean equals(Object obj) {
+		if (!(obj instanceof Key)) {
+		    return false;
+		}
+		Key other = (Key) obj;
+		return dir.equals(other.dir) && ordering == other.ordering && Arrays.equals(stamps, other.stamps);
+	  }
+
+	  @Override
+	  public int hashCode() {
+		return Objects.hash(dir, ordering, Arrays.hashCode(stamps));
+	  }
+    }
+
+    /**
+     * A cached map.
+     */
+    static final class Entry {
+
+	  /**
+	   * Graph of the map, its nodes already renumbered.
+	   */
+	  final Graph graph;
+
+	  /**
+	   * Number of self-loops dropped when the map was parsed.
+	   */
+	  final int selfLoopsRemoved;
+
+	  /**
+	   * Number of duplicate edges dropped when the map was parsed.
+	   */
+	  final int duplicateEdgesRemoved;
+
+	  /**
+	   * Size of the graph in bytes.
+	   */
+	  final long bytes;
+
+	  /**
+	   * Creates the entry.
+	   *
+	   * @param graph graph of the map
+	   * @param selfLoopsRemoved number of self-loops dropped
+	   * @param duplicateEdgesRemoved number of duplicate edges dropped
+	   */
+	  Entry(Graph graph, int selfLoopsRemoved, int duplicateEdgesRemoved) {
+		this.graph = graph;
+		this.selfLoopsRemoved = selfLoopsRemoved;
+		this.duplicateEdgesRemoved = duplicateEdgesRemoved;
+		this.bytes = graph.sizeInBytes();
+	  }
+    }
+
+    /**
+     * Statistics of the cache at one moment.
+     */
+    public static final class Stats {
+
+	  /**
+	   * Number of maps found in the cache.
+	   */
+	  private final long hits;
+
+	  /**
+	   * Number of maps not found in the cache.
+	   */
+	  private final long misses;
+
+	  /**
+	   * Number of maps dropped to stay within the budget.
+	   */
+	  private final long evictions;
+
+	  /**
+	   * Number of cached maps.
+	   */
+	  private final int entries;
+
+	  /**
+	   * Total size of the cached graphs in bytes.
+	   */
+	  private final long size;
+
+	  /**
+	   * Largest total size of the cached graphs in bytes.
+	   */
+	  private final long budget;
+
+	  /**
+	   * Creates the statistics.
+	   *
+	   * @param hits number of maps found in the cache
+	   * @param misses number of maps not found in the cache
+	   * @param evictions number of maps dropped to stay within the budget
+	   * @param entries number of cached maps
+	   * @param size total size of the cached graphs in bytes
+	   * @param budget largest total size of the cached graphs in bytes
+	   */
+	  private Stats(long hits, long misses, long evictions, int entries, long size, long budget) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.entries = entries;
+		this.size = size;
+		this.budget = budget;
+	  }
+
+	  /**
+	   * Gets the number of maps found in the cache.
+	   *
+	   * @return number of hits
+	   */
+	  public long getHits() {
+		return hits;
+	  }
+
+	  /**
+	   * Gets the number of maps not found in the cache.
+	   *
+	   * @return number of misses
+	   */
+	  public long getMisses() {
+		return misses;
+	  }
+
+	  /**
+	   * Gets the number of maps dropped to stay within the budget.
+	   *
+	   * @return number of evictions
+	   */
+	  public long getEvictions() {
+		return evictions;
+	  }
+
+	  /**
+	   * Gets the number of cached maps.
+	   *
+	   * @return number of entries
+	   */
+	  public int getEntries() {
+		return entries;
+	  }
+
+	  /**
+	   * Gets the total size of the cached graphs.
+	   *
+	   * @return size in bytes
+	   */
+	  public long getSize() {
+		return size;
+	  }
+
+	  /**
+	   * Gets the largest total size of the cached graphs.
+	   *
+	   * @return budget in bytes
+	   */
+	  public long getBudget() {
+		return budget;
+	  }
+
+	  @Override
+	  public String toString() {
+		return "hits: " + hits + ", misses: " + misses + ", evictions: " + evictions
+			  + ", entries: " + entries + ", size: " + size + " / " + budget + " B";
+	  }
+    }
+}
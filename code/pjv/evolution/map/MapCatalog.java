@@ -0,0 +1,519 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Index of the maps in a maps directory. The index is stored in the
+ * directory, so a map's files are only read again when they have changed
+ * since the last run. While the catalog is watched, it follows the changes of
+ * the directory as they happen instead of scanning it again.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class MapCatalog implements Closeable {
+
+    /**
+     * Name of the index file in the maps directory.
+     */
+    public static final String FILE_NAME = "catalog.idx";
+
+    /**
+     * First four bytes of the index file.
+     */
+    private static final int MAGIC = 0x47564A43;
+
+    /**
+     * Version of the index format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * How long to wait for more changes before updating the catalog, so that
+     * a file being written is read once.
+     */
+    private static final long SETTLE_MILLIS = 200;
+
+    /**
+     * Size of the buffer the map files are read through.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The catalog of the "maps" directory, created on first use.
+     */
+    private static MapCatalog defaultCatalog;
+
+    /**
+     * The maps directory.
+     */
+    private final Path dir;
+
+    /**
+     * Maps by their names.
+     */
+    private final Map<String, MapInfo> maps = new TreeMap<>();
+
+    /**
+     * Receive the changes of the catalog.
+     */
+    private final List<MapCatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Watches the maps directory and the map directories, <code>null</code>
+     * while the catalog is not watched.
+     */
+    private WatchService watcher;
+
+    /**
+     * Opens the catalog of a maps directory, bringing the stored index up to
+     * date with the directory.
+     *
+     * @param dir the maps directory
+     */
+    public MapCatalog(Path dir) {
+	  this.dir = dir;
+	  load();
+	  if (refresh()) {
+		save();
+	  }
+    }
+
+    /**
+     * Gets the catalog of the "maps" directory, watching it.
+     *
+     * @return the shared catalog
+     */
+    public static synchronized MapCatalog getDefault() {
+	  if (defaultCatalog == null) {
+		defaultCatalog = new MapCatalog(Paths.get("maps"));
+		try {
+		    defaultCatalog.watch();
+		} catch (IOException ex) {
+		    System.err.println("Maps will not be watched: " + ex.getMessage());
+		}
+	  }
+	  return defaultCatalog;
+    }
+
+    /**
+     * Gets all the maps ordered by their names.
+     *
+     * @return information about the maps
+     */
+    public synchronized List<MapInfo> getMaps() {
+	  return new ArrayList<>(maps.values());
+    }
+
+    /**
+     * Gets all the maps in the given order.
+     *
+     * @param order order of the maps, e.g. <code>MapInfo.BY_SIZE</code>
+     * @return information about the maps
+     */
+    public List<MapInfo> getMaps(Comparator<MapInfo> order) {
+	  List<MapInfo> list = getMaps();
+	  list.sort(order);
+	  return list;
+    }
+
+    /**
+     * Gets a map.
+     *
+     * @param name map's directory name in the maps directory
+     * @return information about the map, <code>null</code> if there is no
+     * such map
+     */
+    public synchronized MapInfo getMap(String name) {
+	  return maps.get(name);
+    }
+
+    /**
+     * Adds a listener of the changes.
+     *
+     * @param listener the listener
+     */
+    public void addListener(MapCatalogListener listener) {
+	  listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener of the changes.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(MapCatalogListener listener) {
+	  listeners.remove(listener);
+    }
+
+    /**
+     * Starts following the changes of the maps directory on a daemon thread.
+     * Nothing happens if the catalog is watched already.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void watch() throws IOException {
+	  if (watcher != null) {
+		return;
+	  }
+	  watcher = dir.getFileSystem().newWatchService();
+	  register(dir);
+	  try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+		for (Path map : stream) {
+		    register(map);
+		}
+	  }
+	  WatchService service = watcher;
+	  Thread thread = new Thread(() -> follow(service), "Map catalog");
+	  thread.setDaemon(true);
+	  thread.start();
+    }
+
+    /**
+     * Stops following the changes of the maps directory.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+	  if (watcher != null) {
+		watcher.close();
+		watcher = null;
+	  }
+    }
+
+    /**
+     * Registers a directory with the watch service.
+     *
+     * @param path the directory
+     * @throws IOException if the directory cannot be watched
+     */
+    private void register(Path path) throws IOException {
+	  path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+		    StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Updates the catalog with the changes reported by the watch service
+     * until it is closed. Changes that come shortly after each other are
+     * handled together.
+     *
+     * @param service the watch service
+     */
+    private void follow(WatchService service) {
+	  try {
+		while (true) {
+		    WatchKey key = service.take();
+		    Set<String> changed = new HashSet<>();
+		    boolean overflow = false;
+		    do {
+			  overflow |= collect(key, changed);
+			  key.reset();
+			  key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+		    } while (key != null);
+
+		    boolean modified = false;
+		    if (overflow) {
+			  modified = refresh();
+		    } else {
+			  for (String name : changed) {
+				modified |= update(name);
+			  }
+		    }
+		    if (modified) {
+			  save();
+			  for (MapCatalogListener listener : listeners) {
+				listener.catalogChanged(this);
+			  }
+		    }
+		}
+	  } catch (InterruptedException | ClosedWatchServiceException ex) {
+		// the catalog is not watched anymore
+	  }
+    }
+
+    /**
+     * Finds the maps a watch key reports changes of, and starts watching the
+     * directories of new maps.
+     *
+     * @param key the signalled key
+     * @param changed where to add the names of the changed maps
+     * @return <code>true</code> if some events have been lost
+     */
+    private boolean collect(WatchKey key, Set<String> changed) {
+	  Path watched = (Path) key.watchable();
+	  boolean overflow = false;
+	  for (WatchEvent<?> event : key.pollEvents()) {
+		if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+		    overflow = true;
+		} else if (watched.equals(dir)) {
+		    Path map = dir.resolve((Path) event.context());
+		    changed.add(map.getFileName().toString());
+		    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(map)) {
+			  try {
+				synchronized (this) {
+				    if (watcher != null) {
+					  register(map);
+				    }
+				}
+			  } catch (IOException ex) {
+				System.err.println("Map " + map.getFileName() + " will not be watched: " + ex.getMessage());
+			  }
+		    }
+		} else {
+		    changed.add(watched.getFileName().toString());
+		}
+	  }
+	  return overflow;
+    }
+
+    /**
+     * Brings the whole catalog up to date with the maps directory.
+     *
+     * @return <code>true</code> if the catalog has changed
+     */
+    private boolean refresh() {
+	  Set<String> names = new HashSet<>();
+	  try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+		for (Path map : stream) {
+		    names.add(map.getFileName().toString());
+		}
+	  } catch (IOException ex) {
+		System.err.println("Maps cannot be listed: " + ex.getMessage());
+	  }
+	  synchronized (this) {
+		names.addAll(maps.keySet());
+	  }
+	  boolean modified = false;
+	  for (String name : names) {
+		modified |= update(name);
+	  }
+	  return modified;
+    }
+
+    /**
+     * Brings one map up to date with its directory. Its files are only read
+     * if they differ from the ones in the catalog.
+     *
+     * @param name map's directory name in the maps directory
+     * @return <code>true</code> if the catalog has changed
+     */
+    private boolean update(String name) {
+	  Path map = dir.resolve(name);
+	  MapInfo old = getMap(name);
+	  MapInfo info = null;
+	  if (Files.isDirectory(map)) {
+		try {
+		    info = describe(map, old);
+		} catch (IOException ex) {
+		    // the map is being changed, the next event brings it in
+		    System.err.println("Map " + name + " cannot be read: " + ex.getMessage());
+		    return false;
+		}
+	  }
+	  synchronized (this) {
+		if (info == null) {
+		    return maps.remove(name) != null;
+		}
+		maps.put(name, info);
+	  }
+	  return info != old;
+    }
+
+    /**
+     * Collects the information about a map.
+     *
+     * @param map the map's directory
+     * @param old what the catalog knows about the map, may be
+     * <code>null</code>
+     * @return the information, <code>old</code> if nothing changed
+     * @throws IOException if a file cannot be read
+     */
+    private static MapInfo describe(Path map, MapInfo old) throws IOException {
+	  Path nodesFile = MapLoader.textFile(map, "nodes");
+	  Path edgesFile = MapLoader.textFile(map, "edges");
+	  long nodesModified = modified(nodesFile);
+	  long edgesModified = modified(edgesFile);
+	  long nodesSize = nodesModified < 0 ? -1 : Files.size(nodesFile);
+	  long edgesSize = edgesModified < 0 ? -1 : Files.size(edgesFile);
+	  long binaryModified = modified(map.resolve(BinaryMap.FILE_NAME));
+	  boolean binary = binaryModified >= 0 && binaryModified >= nodesModified && binaryModified >= edgesModified;
+
+	  if (old != null && old.isCurrent(nodesModified, nodesSize, edgesModified, edgesSize)) {
+		return old.hasBinary() == binary ? old : old.withBinary(binary);
+	  }
+	  MessageDigest digest;
+	  try {
+		digest = MessageDigest.getInstance("SHA-256");
+	  } catch (NoSuchAlgorithmException ex) {
+		throw new IllegalStateException(ex);
+	  }
+	  byte[] buffer = new byte[BUFFER_SIZE];
+	  int nodesCount = nodesModified < 0 ? 0 : countRecords(nodesFile, digest, buffer);
+	  int edgesCount = edgesModified < 0 ? 0 : countRecords(edgesFile, digest, buffer);
+	  StringBuilder hash = new StringBuilder();
+	  for (byte b : digest.digest()) {
+		hash.append(String.format("%02x", b));
+	  }
+	  return new MapInfo(map.getFileName().toString(), nodesCount, edgesCount, nodesModified, nodesSize,
+		    edgesModified, edgesSize, hash.toString(), binary);
+    }
+
+    /**
+     * Gets the modification time of a file.
+     *
+     * @param file the file
+     * @return milliseconds since the epoch, -1 if there is no such file
+     * @throws IOException if the file cannot be read
+     */
+    private static long modified(Path file) throws IOException {
+	  try {
+		return Files.getLastModifiedTime(file).toMillis();
+	  } catch (NoSuchFileException ex) {
+		return -1;
+	  }
+    }
+
+    /**
+     * Counts the non-blank lines of a map text file, gzipped or not, adding
+     * its decompressed content to a digest.
+     *
+     * @param file the file
+     * @param digest digest of the map
+     * @param buffer the read buffer
+     * @return number of records
+     * @throws IOException if the file cannot be read
+     */
+    private static int countRecords(Path file, MessageDigest digest, byte[] buffer) throws IOException {
+	  int count = 0;
+	  boolean blank = true;
+	  try (InputStream in = file.toString().endsWith(CompressedMapReader.SUFFIX)
+		    ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+		    digest.update(buffer, 0, read);
+		    for (int p = 0; p < read; p++) {
+			  byte b = buffer[p];
+			  if (b == '\n') {
+				if (!blank) {
+				    count++;
+				}
+				blank = true;
+			  } else if (b > ' ') {
+				blank = false;
+			  }
+		    }
+		}
+	  }
+	  return blank ? count : count + 1;
+    }
+
+    /**
+     * Reads the stored index. A missing or damaged index is simply rebuilt.
+     */
+    private void load() {
+	  Path file = dir.resolve(FILE_NAME);
+	  try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+		    return;
+		}
+		int count = in.readInt();
+		Map<String, MapInfo> loaded = new TreeMap<>();
+		for (int i = 0; i < count; i++) {
+		    MapInfo info = new MapInfo(in.readUTF(), in.readInt(), in.readInt(), in.readLong(), in.readLong(),
+				in.readLong(), in.readLong(), in.readUTF(), in.readBoolean());
+		    loaded.put(info.getName(), info);
+		}
+		synchronized (this) {
+		    maps.putAll(loaded);
+		}
+	  } catch (NoSuchFileException ex) {
+		// first run
+	  } catch (IOException ex) {
+		System.err.println("Rebuilding the map catalog, " + ex.getMessage());
+	  }
+    }
+
+    /**
+     * Stores the index. It is written under a temporary name first and then
+     * moved in place. The catalog is fine without it, so failures are only
+     * reported.
+     */
+    private void save() {
+	  Path file = dir.resolve(FILE_NAME);
+	  Path temp = dir.resolve(FILE_NAME + ".tmp");
+	  List<MapInfo> list = getMaps();
+	  try {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+		    out.writeInt(MAGIC);
+		    out.writeInt(VERSION);
+		    out.writeInt(list.size());
+		    for (MapInfo info : list) {
+			  out.writeUTF(info.getName());
+			  out.writeInt(info.getNodesCount());
+			  out.writeInt(info.getEdgesCount());
+			  out.writeLong(info.getNodesModified());
+			  out.writeLong(info.getNodesSize());
+			  out.writeLong(info.getEdgesModified());
+			  out.writeLong(info.getEdgesSize());
+			  out.writeUTF(info.getHash());
+			  out.writeBoolean(info.hasBinary());
+		    }
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	  } catch (IOException ex) {
+		System.err.println("Map catalog cannot be saved: " + ex.getMessage());
+	  }
+    }
+}
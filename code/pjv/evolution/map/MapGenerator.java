@@ -0,0 +1,565 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generator of synthetic maps for testing how the evolution scales. The maps
+ * are written in the format of the map text files, node by node and edge by
+ * edge, so the edges are never held in memory. The same seed always gives
+ * the same map.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class MapGenerator {
+
+    /**
+     * Kind of the generated graph.
+     */
+    public enum Model {
+
+	  /**
+	   * Random geometric graph: nodes placed uniformly at random, connected
+	   * when they are closer than a radius.
+	   */
+	  GEOMETRIC,
+	  /**
+	   * Erdos-Renyi graph: every pair of nodes is connected with the same
+	   * probability.
+	   */
+	  RANDOM,
+	  /**
+	   * Barabasi-Albert graph: every new node is connected to existing nodes
+	   * chosen with probability proportional to their degrees.
+	   */
+	  PREFERENTIAL,
+	  /**
+	   * Road-like graph: a jittered grid with some streets missing and some
+	   * diagonals added.
+	   */
+	  GRID
+    }
+
+    /**
+     * Seed used when none is given.
+     */
+    public static final long DEFAULT_SEED = 20150101L;
+
+    /**
+     * Width and height of the area the nodes are placed in, about the size of
+     * the bundled maps.
+     */
+    private static final double EXTENT = 640;
+
+    /**
+     * Size of the write buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Kind of the generated graph.
+     */
+    private final Model model;
+
+    /**
+     * Number of nodes.
+     */
+    private final int nodesCount;
+
+    /**
+     * Expected average degree of a node.
+     */
+    private final double degree;
+
+    /**
+     * Seed of the random numbers.
+     */
+    private final long seed;
+
+    /**
+     * Number of edges written by the last <code>write</code>.
+     */
+    private long edgesCount = 0;
+
+    /**
+     * Prepares the generation of a map.
+     *
+     * @param model kind of the graph
+     * @param nodesCount number of nodes
+     * @param degree expected average degree of a node
+     * @param seed seed of the random numbers
+     * @throws IllegalArgumentException if the graph cannot have that many
+     * nodes of that degree
+     */
+    public MapGenerator(Model model, int nodesCount, double degree, long seed) {
+	  if (nodesCount < 1 || degree < 0 || degree >= nodesCount - 1 && degree > 0) {
+		throw new IllegalArgumentException("Cannot generate " + nodesCount + " nodes of degree " + degree);
+	  }
+	  this.model = model;
+	  this.nodesCount = nodesCount;
+	  this.degree = degree;
+	  this.seed = seed;
+    }
+
+    /**
+     * Writes the map's nodes and edges files, replacing the ones already in
+     * the directory.
+     *
+     * @param dir the map's directory, created if it does not exist
+     * @return number of edges written
+     * @throws IOException if the files cannot be written
+     */
+    public long write(Path dir) throws IOException {
+	  Files.createDirectories(dir);
+	  Random random = new Random(seed);
+	  edgesCount = 0;
+	  try (RecordWriter nodes = new RecordWriter(Files.newOutputStream(dir.resolve("nodes")));
+		    RecordWriter edges = new RecordWriter(Files.newOutputStream(dir.resolve("edges")))) {
+		switch (model) {
+		    case GEOMETRIC:
+			  writeGeometric(random, nodes, edges);
+			  break;
+		    case RANDOM:
+			  writeRandomNodes(random, nodes);
+			  writeRandom(random, edges);
+			  break;
+		    case PREFERENTIAL:
+			  writeRandomNodes(random, nodes);
+			  writePreferential(random, edges);
+			  break;
+		    default:
+			  writeGrid(random, nodes, edges);
+			  break;
+		}
+	  }
+	  return edgesCount;
+    }
+
+    /**
+     * Writes nodes placed uniformly at random.
+     *
+     * @param random random numbers
+     * @param nodes writer of the nodes
+     * @throws IOException if the file cannot be written
+     */
+    private void writeRandomNodes(Random random, RecordWriter nodes) throws IOException {
+	  for (int i = 0; i < nodesCount; i++) {
+		nodes.node(i, random.nextDouble() * EXTENT, random.nextDouble() * EXTENT);
+	  }
+    }
+
+    /**
+     * Writes a random geometric graph. The nodes are sorted into square cells
+     * as wide as the radius, so only the neighbouring cells are searched for
+     * the edges. Only the coordinates are kept in memory.
+     *
+     * @param random random numbers
+     * @param nodes writer of the nodes
+     * @param edges writer of the edges
+     * @throws IOException if a file cannot be written
+     */
+    private void writeGeometric(Random random, RecordWriter nodes, RecordWriter edges) throws IOException {
+	  double[] x = new double[nodesCount];
+	  double[] y = new double[nodesCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		x[i] = random.nextDouble() * EXTENT;
+		y[i] = random.nextDouble() * EXTENT;
+		nodes.node(i, x[i], y[i]);
+	  }
+
+	  // the expected degree is the number of nodes in a circle of the radius
+	  double radius = EXTENT * Math.sqrt(degree / (Math.PI * nodesCount));
+	  int side = (int) Math.max(1, Math.min(Math.sqrt(nodesCount), EXTENT / Math.max(radius, Double.MIN_NORMAL)));
+	  int[] cellStart = new int[side * side + 1];
+	  int[] cellOf = new int[nodesCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		int cx = Math.min(side - 1, (int) (x[i] / EXTENT * side));
+		int cy = Math.min(side - 1, (int) (y[i] / EXTENT * side));
+		cellOf[i] = cy * side + cx;
+		cellStart[cellOf[i] + 1]++;
+	  }
+	  for (int c = 0; c < side * side; c++) {
+		cellStart[c + 1] += cellStart[c];
+	  }
+	  int[] order = new int[nodesCount];
+	  int[] fill = new int[side * side];
+	  System.arraycopy(cellStart, 0, fill, 0, side * side);
+	  for (int i = 0; i < nodesCount; i++) {
+		order[fill[cellOf[i]]++] = i;
+	  }
+	  fill = null;
+	  cellOf = null;
+
+	  // every pair of cells is searched once: the cell itself and the
+	  // neighbours to the right and below
+	  int[][] forward = {{1, 0}, {-1, 1}, {0, 1}, {1, 1}};
+	  double limit = radius * radius;
+	  for (int cy = 0; cy < side; cy++) {
+		for (int cx = 0; cx < side; cx++) {
+		    int c = cy * side + cx;
+		    for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+			  int u = order[k];
+			  for (int l = k + 1; l < cellStart[c + 1]; l++) {
+				connectClose(x, y, u, order[l], limit, edges);
+			  }
+			  for (int[] step : forward) {
+				int nx = cx + step[0];
+				int ny = cy + step[1];
+				if (nx < 0 || nx >= side || ny >= side) {
+				    continue;
+				}
+				int n = ny * side + nx;
+				for (int l = cellStart[n]; l < cellStart[n + 1]; l++) {
+				    connectClose(x, y, u, order[l], limit, edges);
+				}
+			  }
+		    }
+		}
+	  }
+    }
+
+    /**
+     * Writes an edge between two nodes if they are close enough.
+     *
+     * @param x X coordinates of the nodes
+     * @param y Y coordinates of the nodes
+     * @param u first node
+     * @param v second node
+     * @param limit square of the radius
+     * @param edges writer of the edges
+     * @throws IOException if the file cannot be written
+     */
+    private void connectClose(double[] x, double[] y, int u, int v, double limit, RecordWriter edges) throws IOException {
+	  double dx = x[u] - x[v];
+	  double dy = y[u] - y[v];
+	  if (dx * dx + dy * dy <= limit) {
+		edges.edge(Math.min(u, v), Math.max(u, v));
+		edgesCount++;
+	  }
+    }
+
+    /**
+     * Writes an Erdos-Renyi graph. Instead of trying every pair, the number of
+     * pairs to skip until the next edge is drawn from the geometric
+     * distribution (Batagelj and Brandes), so the time is linear in the size
+     * of the graph and nothing is kept in memory.
+     *
+     * @param random random numbers
+     * @param edges writer of the edges
+     * @throws IOException if the file cannot be written
+     */
+    private void writeRandom(Random random, RecordWriter edges) throws IOException {
+	  if (degree == 0) {
+		return;
+	  }
+	  double p = degree / (nodesCount - 1);
+	  double logMiss = Math.log(1 - p);
+	  long v = 1;
+	  long w = -1;
+	  while (v < nodesCount) {
+		w += 1 + (long) Math.floor(Math.log(1 - random.nextDouble()) / logMiss);
+		while (w >= v && v < nodesCount) {
+		    w -= v;
+		    v++;
+		}
+		if (v < nodesCount) {
+		    edges.edge((int) w, (int) v);
+		    edgesCount++;
+		}
+	  }
+    }
+
+    /**
+     * Writes a Barabasi-Albert graph, starting from a complete graph. The
+     * degrees are kept in a Fenwick tree, so a node is drawn in proportion to
+     * its degree in logarithmic time and only the degrees are kept in memory.
+     *
+     * @param random random numbers
+     * @param edges writer of the edges
+     * @throws IOException if the file cannot be written
+     */
+    private void writePreferential(Random random, RecordWriter edges) throws IOException {
+	  int m = (int) Math.max(1, Math.round(degree / 2));
+	  int start = Math.min(nodesCount, m + 1);
+	  long[] tree = new long[nodesCount + 1];
+	  long total = 0;
+	  for (int u = 0; u < start; u++) {
+		for (int v = u + 1; v < start; v++) {
+		    edges.edge(u, v);
+		    edgesCount++;
+		}
+		addWeight(tree, u, start - 1);
+		total += start - 1;
+	  }
+
+	  int[] targets = new int[m];
+	  for (int v = start; v < nodesCount; v++) {
+		for (int k = 0; k < m; k++) {
+		    int target;
+		    boolean repeated;
+		    do {
+			  target = findWeight(tree, (long) (random.nextDouble() * total));
+			  repeated = false;
+			  for (int j = 0; j < k; j++) {
+				repeated |= targets[j] == target;
+			  }
+		    } while (repeated);
+		    targets[k] = target;
+		}
+		for (int k = 0; k < m; k++) {
+		    edges.edge(targets[k], v);
+		    edgesCount++;
+		    addWeight(tree, targets[k], 1);
+		}
+		addWeight(tree, v, m);
+		total += 2 * m;
+	  }
+    }
+
+    /**
+     * Adds to the weight of a node in a Fenwick tree.
+     *
+     * @param tree the tree, indexed from 1
+     * @param node the node
+     * @param weight weight to add
+     */
+    private static void addWeight(long[] tree, int node, long weight) {
+	  for (int i = node + 1; i < tree.length; i += i & -i) {
+		tree[i] += weight;
+	  }
+    }
+
+    /**
+     * Finds the node whose weight covers a point of the total weight.
+     *
+     * @param tree the tree, indexed from 1
+     * @param point point below the total weight
+     * @return the node
+     */
+    private static int findWeight(long[] tree, long point) {
+	  int node = 0;
+	  for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+		if (node + step < tree.length && tree[node + step] <= point) {
+		    node += step;
+		    point -= tree[node];
+		}
+	  }
+	  return node;
+    }
+
+    /**
+     * Writes a road-like graph: a square grid with jittered crossings, each
+     * street kept with the probability that gives the degree, and diagonals
+     * added for degrees above four. The grid is written row by row and
+     * nothing is kept in memory.
+     *
+     * @param random random numbers
+     * @param nodes writer of the nodes
+     * @param edges writer of the edges
+     * @throws IOException if a file cannot be written
+     */
+    private void writeGrid(Random random, RecordWriter nodes, RecordWriter edges) throws IOException {
+	  int width = (int) Math.ceil(Math.sqrt(nodesCount));
+	  double spacing = EXTENT / width;
+	  for (int i = 0; i < nodesCount; i++) {
+		nodes.node(i, (i % width + 0.2 + 0.6 * random.nextDouble()) * spacing,
+			  (i / width + 0.2 + 0.6 * random.nextDouble()) * spacing);
+	  }
+
+	  double street = Math.min(1, degree / 4);
+	  double diagonal = Math.max(0, Math.min(1, (degree - 4) / 2));
+	  for (int i = 0; i < nodesCount; i++) {
+		boolean right = i % width + 1 < width && i + 1 < nodesCount;
+		boolean down = i + width < nodesCount;
+		if (right && random.nextDouble() < street) {
+		    edges.edge(i, i + 1);
+		    edgesCount++;
+		}
+		if (down && random.nextDouble() < street) {
+		    edges.edge(i, i + width);
+		    edgesCount++;
+		}
+		if (right && i + width + 1 < nodesCount && random.nextDouble() < diagonal) {
+		    edges.edge(i, i + width + 1);
+		    edgesCount++;
+		}
+	  }
+    }
+
+    /**
+     * Generates a map into the "maps" directory.
+     *
+     * @param args model, map's directory name, number of nodes, average
+     * degree, optionally the seed, and <code>--binary</code> to write the
+     * binary file too
+     * @throws IOException if the map cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+	  if (args.length < 4) {
+		System.err.println("Usage: MapGenerator geometric|random|preferential|grid <dir> <nodes> <degree> [seed] [--binary]");
+		return;
+	  }
+	  Model model = Model.valueOf(args[0].toUpperCase());
+	  String dir = args[1];
+	  int nodes = Integer.parseInt(args[2]);
+	  double degree = Double.parseDouble(args[3]);
+	  long seed = DEFAULT_SEED;
+	  boolean binary = false;
+	  for (int i = 4; i < args.length; i++) {
+		if (args[i].equals("--binary")) {
+		    binary = true;
+		} else {
+		    seed = Long.parseLong(args[i]);
+		}
+	  }
+
+	  long edges = new MapGenerator(model, nodes, degree, seed).write(Paths.get("maps", dir));
+	  System.out.println("Map " + dir + ": " + nodes + " nodes, " + edges + " edges, " + model + ", seed " + seed);
+	  if (binary) {
+		Path file = MapLoader.convert(dir);
+		System.out.println("Map " + dir + " converted to " + file + " (" + Files.size(file) + " B)");
+	  }
+    }
+
+    /**
+     * Buffered writer of the records of the map text files.
+     */
+    private static final class RecordWriter implements Closeable {
+
+	  /**
+	   * The file.
+	   */
+	  private final OutputStream out;
+
+	  /**
+	   * Bytes not written yet.
+	   */
+	  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	  /**
+	   * Number of bytes in the buffer.
+	   */
+	  private int size = 0;
+
+	  /**
+	   * Creates the writer.
+	   *
+	   * @param out the file
+	   */
+	  RecordWriter(OutputStream out) {
+		this.out = out;
+	  }
+
+	  /**
+	   * Writes a node.
+	   *
+	   * @param id id of the node
+	   * @param x X coordinate
+	   * @param y Y coordinate
+	   * @throws IOException if the file cannot be written
+	   */
+	  void node(int id, double x, double y) throws IOException {
+		reserve(64);
+		writeInt(id);
+		buffer[size++] = ' ';
+		writeText(Double.toString(x));
+		buffer[size++] = ' ';
+		writeText(Double.toString(y));
+		buffer[size++] = '\n';
+	  }
+
+	  /**
+	   * Writes an edge.
+	   *
+	   * @param a id of the node the edge leads from
+	   * @param b id of the node the edge leads to
+	   * @throws IOException if the file cannot be written
+	   */
+	  void edge(int a, int b) throws IOException {
+		reserve(24);
+		writeInt(a);
+		buffer[size++] = ' ';
+		writeInt(b);
+		buffer[size++] = '\n';
+	  }
+
+	  /**
+	   * Writes the digits of a non-negative number.
+	   *
+	   * @param value the number
+	   */
+	  private void writeInt(int value) {
+		int digits = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10) {
+		    digits++;
+		}
+		for (int p = size + digits - 1; p >= size; p--) {
+		    buffer[p] = (byte) ('0' + value % 10);
+		    value /= 10;
+		}
+		size += digits;
+	  }
+
+	  /**
+	   * Writes an ASCII text.
+	   *
+	   * @param text the text
+	   */
+	  private void writeText(String text) {
+		for (int i = 0; i < text.length(); i++) {
+		    buffer[size++] = (byte) text.charAt(i);
+		}
+	  }
+
+	  /**
+	   * Makes room in the buffer, writing it out if necessary.
+	   *
+	   * @param bytes number of bytes needed
+	   * @throws IOException if the file cannot be written
+	   */
+	  private void reserve(int bytes) throws IOException {
+		if (size + bytes > buffer.length) {
+		    out.write(buffer, 0, size);
+		    size = 0;
+		}
+	  }
+
+	  @Override
+	  public void close() throws IOException {
+		try {
+		    out.write(buffer, 0, size);
+		    size = 0;
+		} finally {
+		    out.close();
+		}
+	  }
+    }
+}
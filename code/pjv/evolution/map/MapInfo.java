@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.util.Comparator;
+
+/**
+ * What the map catalog knows about a map without loading it.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class MapInfo {
+
+    /**
+     * Orders maps by their directory names.
+     */
+    public static final Comparator<MapInfo> BY_NAME = Comparator.comparing(MapInfo::getName);
+
+    /**
+     * Orders maps from the smallest one, by the number of edges and then by
+     * the number of nodes.
+     */
+    public static final Comparator<MapInfo> BY_SIZE = Comparator.comparingInt(MapInfo::getEdgesCount)
+		.thenComparingInt(MapInfo::getNodesCount).thenComparing(BY_NAME);
+
+    /**
+     * Map's directory name in the "maps" directory.
+     */
+    private final String name;
+
+    /**
+     * Number of records in the nodes file.
+     */
+    private final int nodesCount;
+
+    /**
+     * Number of records in the edges file.
+     */
+    private final int edgesCount;
+
+    /**
+     * Modification time of the nodes file, -1 if there is none.
+     */
+    private final long nodesModified;
+
+    /**
+     * Size of the nodes file in bytes, -1 if there is none.
+     */
+    private final long nodesSize;
+
+    /**
+     * Modification time of the edges file, -1 if there is none.
+     */
+    private final long edgesModified;
+
+    /**
+     * Size of the edges file in bytes, -1 if there is none.
+     */
+    private final long edgesSize;
+
+    /**
+     * SHA-256 of the nodes text followed by the edges text, in hex.
+     */
+    private final String hash;
+
+    /**
+     * Whether there is an up-to-date binary file.
+     */
+    private final boolean binary;
+
+    /**
+     * Creates the information.
+     *
+     * @param name map's directory name in the "maps" directory
+     * @param nodesCount number of records in the nodes file
+     * @param edgesCount number of records in the edges file
+     * @param nodesModified modification time of the nodes file
+     * @param nodesSize size of the nodes file
+     * @param edgesModified modification time of the edges file
+     * @param edgesSize size of the edges file
+     * @param hash hash of the files' content
+     * @param binary whether there is an up-to-date binary file
+     */
+    MapInfo(String name, int nodesCount, int edgesCount, long nodesModified, long nodesSize,
+		long edgesModified, long edgesSize, String hash, boolean binary) {
+	  this.name = name;
+	  this.nodesCount = nodesCount;
+	  this.edgesCount = edgesCount;
+	  this.nodesModified = nodesModified;
+	  this.nodesSize = nodesSize;
+	  this.edgesModified = edgesModified;
+	  this.edgesSize = edgesSize;
+	  this.hash = hash;
+	  this.binary = binary;
+    }
+
+    /**
+     * Creates a copy that differs in the availability of the binary file.
+     *
+     * @param binary whether there is an up-to-date binary file
+     * @return the copy
+     */
+    MapInfo withBinary(boolean binary) {
+	  return new MapInfo(name, nodesCount, edgesCount, nodesModified, nodesSize, edgesModified, edgesSize, hash, binary);
+    }
+
+    /**
+     * Checks whether the text files are the same ones this information was
+     * collected from.
+     *
+     * @param nodesModified modification time of the nodes file
+     * @param nodesSize size of the nodes file
+     * @param edgesModified modification time of the edges file
+     * @param edgesSize size of the edges file
+     * @return <code>true</code> if none of them changed
+     */
+    boolean isCurrent(long nodesModified, long nodesSize, long edgesModified, long edgesSize) {
+	  return this.nodesModified == nodesModified && this.nodesSize == nodesSize
+		    && this.edgesModified == edgesModified && this.edgesSize == edgesSize;
+    }
+
+    /**
+     * Gets the map's directory name.
+     *
+     * @return name of the map in the "maps" directory
+     */
+    public String getName() {
+	  return name;
+    }
+
+    /**
+     * Gets the number of nodes in the nodes file.
+     *
+     * @return number of nodes
+     */
+    public int getNodesCount() {
+	  return nodesCount;
+    }
+
+    /**
+     * Gets the number of edges in the edges file, including self-loops and
+     * duplicates that loading drops.
+     *
+     * @return number of edges
+     */
+    public int getEdgesCount() {
+	  return edgesCount;
+    }
+
+    /**
+     * Gets the modification time of the nodes file.
+     *
+     * @return milliseconds since the epoch, -1 if there is no nodes file
+     */
+    public long getNodesModified() {
+	  return nodesModified;
+    }
+
+    /**
+     * Gets the size of the nodes file.
+     *
+     * @return size in bytes, -1 if there is no nodes file
+     */
+    public long getNodesSize() {
+	  return nodesSize;
+    }
+
+    /**
+     * Gets the modification time of the edges file.
+     *
+     * @return milliseconds since the epoch, -1 if there is no edges file
+     */
+    public long getEdgesModified() {
+	  return edgesModified;
+    }
+
+    /**
+     * Gets the size of the edges file.
+     *
+     * @return size in bytes, -1 if there is no edges file
+     */
+    public long getEdgesSize() {
+	  return edgesSize;
+    }
+
+    /**
+     * Gets the hash of the map's content. Maps with the same hash have the
+     * same files, whether they are gzipped or not.
+     *
+     * @return SHA-256 of the nodes text followed by the edges text, in hex
+     */
+    public String getHash() {
+	  return hash;
+    }
+
+    /**
+     * Tells whether the map has an up-to-date binary file, so that it loads
+     * without parsing.
+     *
+     * @return <code>true</code> if there is a binary file
+     */
+    public boolean hasBinary() {
+	  return binary;
+    }
+
+    @Override
+    public String toString() {
+	  return name + ": " + nodesCount + " nodes, " + edgesCount + " edges";
+    }
+}
@@ -26,10 +26,21 @@ package pjv.evolution.map;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import pjv.evolution.util.Edge;
-import pjv.evolution.util.Node;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+import pjv.evolution.util.Graph;
+import pjv.evolution.util.NodeOrdering;
 import pjv.evolution.util.StateSpace;
 
 /**
@@ -40,15 +51,364 @@ import pjv.evolution.util.StateSpace;
 public class MapLoader {
 
     /**
-     * Loads structured data from nodes and edges files in 'dir', parses them
-     * and loads them into <code>StateSpace</code>
+     * How the text files of a map are parsed.
+     */
+    public enum Parsing {
+
+	  /**
+	   * Line by line with <code>String.split</code>, on a single thread.
+	   */
+	  LINES,
+	  /**
+	   * In newline-aligned chunks on the fork/join pool, straight from the
+	   * bytes, see <code>TextMapParser</code>.
+	   */
+	  PARALLEL,
+	  /**
+	   * In two passes through a fixed-size buffer, the first one counting
+	   * the degrees and the second one filling the adjacency lists, see
+	   * <code>StreamingMapReader</code>. Meant for maps that only just fit
+	   * in memory.
+	   */
+	  STREAMING
+    }
+
+    /**
+     * The graph that has been loaded.
+     */
+    private final Graph graph;
+
+    /**
+     * Number of edges dropped while loading because they lead from a node to
+     * the same node.
+     */
+    private int selfLoopsRemoved = 0;
+
+    /**
+     * Number of edges dropped while loading because the same edge, in either
+     * direction, has already been loaded.
+     */
+    private int duplicateEdgesRemoved = 0;
+
+    /**
+     * Peak heap usage while the map was being loaded, in bytes.
+     */
+    private long peakHeapUsed = 0;
+
+    /**
+     * Receives the progress of the loading.
+     */
+    private final MapLoadListener listener;
+
+    /**
+     * Loads structured data from nodes and edges files in 'dir' and parses them
+     * into a new <code>Graph</code>. The graph is also published in
+     * <code>StateSpace</code> for compatibility, but nothing that is already
+     * running on another graph is affected. The parsed map is cached in a
+     * binary file next to the text files, see <code>BinaryMap</code>, and
+     * kept in memory while it does not change, see <code>MapCache</code>.
+     * Instead of a text file, its gzipped version with the ".gz" suffix may
+     * be given; it is decompressed while it is parsed.
      *
      * @param dir map's directory name in the "maps" directory
      */
     public MapLoader(String dir) {
-	  StateSpace.clear();
-	  List<Node> n = new ArrayList<>();
-	  List<Edge> e = new ArrayList<>();
+	  this(dir, NodeOrdering.NONE);
+    }
+
+    /**
+     * Loads the map like <code>MapLoader(String)</code> and renumbers its
+     * nodes. The graph remembers the ids from the map files, see
+     * <code>Graph.getOriginalId</code>.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @param ordering how to renumber the nodes after loading
+     */
+    public MapLoader(String dir, NodeOrdering ordering) {
+	  this(dir, ordering, Parsing.PARALLEL);
+    }
+
+    /**
+     * Loads the map like <code>MapLoader(String, NodeOrdering)</code>,
+     * parsing its text files the given way when there is no up-to-date
+     * binary file. Gzipped text files are always parsed by
+     * <code>CompressedMapReader</code>.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @param ordering how to renumber the nodes after loading
+     * @param parsing how to parse the text files
+     */
+    public MapLoader(String dir, NodeOrdering ordering, Parsing parsing) {
+	  this(dir, ordering, parsing, null, true);
+    }
+
+    /**
+     * Loads the map like <code>MapLoader(String, NodeOrdering, Parsing)</code>
+     * and reports the progress to a listener. Interrupting the thread cancels
+     * the loading.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @param ordering how to renumber the nodes after loading
+     * @param parsing how to parse the text files
+     * @param listener receives the progress of the loading
+     * @throws CancellationException if the thread has been interrupted
+     */
+    public MapLoader(String dir, NodeOrdering ordering, Parsing parsing, MapLoadListener listener) {
+	  this(dir, ordering, parsing, listener, true);
+    }
+
+    /**
+     * Loads the map from <code>MapCache</code> if it has not changed since it
+     * was last loaded, from its binary file if there is an up-to-date one,
+     * from the text files otherwise. Without the binary file and the cache,
+     * the parsing alone can be timed, see <code>LoadBench</code>.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @param ordering how to renumber the nodes after loading
+     * @param parsing how to parse the text files
+     * @param listener receives the progress of the loading, may be
+     * <code>null</code>
+     * @param useBinary <code>false</code> to always parse the text files and
+     * leave the binary file and the cache alone
+     */
+    MapLoader(String dir, NodeOrdering ordering, Parsing parsing, MapLoadListener listener, boolean useBinary) {
+	  this.listener = listener != null ? listener : (read, total, nodes, edges) -> {
+	  };
+
+	  MapCache.Key key = useBinary ? MapCache.Key.of(dir, ordering) : null;
+	  MapCache.Entry cached = key != null ? MapCache.getDefault().get(key) : null;
+	  if (cached != null) {
+		selfLoopsRemoved = cached.selfLoopsRemoved;
+		duplicateEdgesRemoved = cached.duplicateEdgesRemoved;
+		graph = cached.graph;
+		this.listener.progress(1, 1, graph.nodesCount(), graph.edgesCount());
+	  } else {
+		Graph loaded = useBinary ? readBinary(dir) : null;
+		if (loaded == null) {
+		    if (isCompressed(dir)) {
+			  loaded = parseCompressed(dir);
+		    } else if (parsing == Parsing.LINES) {
+			  loaded = parseLines(dir);
+		    } else if (parsing == Parsing.STREAMING) {
+			  loaded = measurePeakHeap(() -> parseStreaming(dir));
+		    } else {
+			  loaded = parseChunks(dir);
+		    }
+		    if (useBinary) {
+			  writeBinary(dir, loaded);
+		    }
+		}
+		if (selfLoopsRemoved > 0 || duplicateEdgesRemoved > 0) {
+		    System.out.println("Map " + dir + ": removed " + selfLoopsRemoved + " self-loops and "
+				+ duplicateEdgesRemoved + " duplicate edges");
+		}
+
+		graph = ordering.apply(loaded);
+		if (key != null && graph.nodesCount() > 0) {
+		    MapCache.getDefault().put(key, new MapCache.Entry(graph, selfLoopsRemoved, duplicateEdgesRemoved));
+		}
+	  }
+	  StateSpace.setGraph(graph);
+    }
+
+    /**
+     * Parses a map and records the peak heap usage meanwhile. The peaks of
+     * the heap memory pools are shared by the whole JVM, so they are only
+     * reset for the streaming parsing, which is there to be measured.
+     *
+     * @param parse the parsing
+     * @return the parsed graph
+     */
+    private Graph measurePeakHeap(Supplier<Graph> parse) {
+	  List<MemoryPoolMXBean> heap = new ArrayList<>();
+	  for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+		if (pool.getType() == MemoryType.HEAP) {
+		    pool.resetPeakUsage();
+		    heap.add(pool);
+		}
+	  }
+	  Graph parsed = parse.get();
+	  for (MemoryPoolMXBean pool : heap) {
+		peakHeapUsed += pool.getPeakUsage().getUsed();
+	  }
+	  return parsed;
+    }
+
+    /**
+     * Converts the map's text files into its binary file.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return path to the binary file
+     * @throws IOException if the binary file cannot be written
+     */
+    public static Path convert(String dir) throws IOException {
+	  MapLoader loader = new MapLoader(dir, NodeOrdering.NONE, Parsing.PARALLEL, null, false);
+	  Path file = Paths.get("maps", dir, BinaryMap.FILE_NAME);
+	  new BinaryMap(loader.graph, loader.selfLoopsRemoved, loader.duplicateEdgesRemoved).write(file);
+	  return file;
+    }
+
+    /**
+     * Reads the map's binary file, unless it is missing or older than the
+     * text files.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return the graph, <code>null</code> if the text files have to be parsed
+     */
+    private Graph readBinary(String dir) {
+	  Path file = Paths.get("maps", dir, BinaryMap.FILE_NAME);
+	  try {
+		FileTime modified = Files.getLastModifiedTime(file);
+		for (String name : new String[]{"nodes", "edges"}) {
+		    Path text = textFile(Paths.get("maps", dir), name);
+		    if (Files.exists(text) && Files.getLastModifiedTime(text).compareTo(modified) > 0) {
+			  return null;
+		    }
+		}
+		BinaryMap map = BinaryMap.read(file);
+		selfLoopsRemoved = map.getSelfLoopsRemoved();
+		duplicateEdgesRemoved = map.getDuplicateEdgesRemoved();
+		long size = Files.size(file);
+		listener.progress(size, size, map.getGraph().nodesCount(), map.getGraph().edgesCount());
+		return map.getGraph();
+	  } catch (NoSuchFileException ex) {
+		return null;
+	  } catch (IOException ex) {
+		if (Thread.currentThread().isInterrupted()) {
+		    throw new CancellationException("Loading of map " + dir + " cancelled");
+		}
+		System.err.println("Map " + dir + ": ignoring binary file, " + ex.getMessage());
+		return null;
+	  }
+    }
+
+    /**
+     * Stores the parsed map in its binary file, so that the next load is
+     * faster. The map is fine without it, so failures are only reported.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @param loaded the parsed graph
+     */
+    private void writeBinary(String dir, Graph loaded) {
+	  if (loaded.nodesCount() == 0) {
+		// nothing was parsed, most likely the map does not exist
+		return;
+	  }
+	  try {
+		new BinaryMap(loaded, selfLoopsRemoved, duplicateEdgesRemoved).write(Paths.get("maps", dir, BinaryMap.FILE_NAME));
+	  } catch (IOException ex) {
+		System.err.println("Map " + dir + ": cannot write binary file, " + ex.getMessage());
+	  }
+    }
+
+    /**
+     * Reads the map's text files into a new <code>Graph</code>, decompressing
+     * the gzipped ones, see <code>CompressedMapReader</code>. A map that
+     * cannot be read is reported and loaded empty.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return the read graph
+     * @throws CancellationException if the thread has been interrupted
+     */
+    private Graph parseCompressed(String dir) {
+	  Path map = Paths.get("maps", dir);
+	  CompressedMapReader reader = new CompressedMapReader(textFile(map, "nodes"), textFile(map, "edges"), listener);
+	  try {
+		reader.read();
+	  } catch (IOException ex) {
+		if (Thread.currentThread().isInterrupted()) {
+		    throw new CancellationException("Loading of map " + dir + " cancelled");
+		}
+		System.err.println("Map " + dir + ": " + ex.getMessage());
+		return new Graph(new double[0], new double[0], 0, new int[0], new int[0], 0);
+	  }
+	  int[] from = reader.getEdgeFrom();
+	  int[] to = reader.getEdgeTo();
+	  int edgesCount = canonicalizeEdges(from, to, reader.getEdgesCount());
+	  return new Graph(reader.getPointX(), reader.getPointY(), reader.getNodesCount(), from, to, edgesCount);
+    }
+
+    /**
+     * Reads the map's text files into a new <code>Graph</code> in two passes,
+     * see <code>StreamingMapReader</code>. A map that cannot be read is
+     * reported and loaded empty.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return the read graph
+     * @throws CancellationException if the thread has been interrupted
+     */
+    private Graph parseStreaming(String dir) {
+	  StreamingMapReader reader = new StreamingMapReader(Paths.get("maps", dir, "nodes"), Paths.get("maps", dir, "edges"), listener);
+	  try {
+		Graph read = reader.read();
+		selfLoopsRemoved = reader.getSelfLoopsRemoved();
+		duplicateEdgesRemoved = reader.getDuplicateEdgesRemoved();
+		return read;
+	  } catch (IOException ex) {
+		if (Thread.currentThread().isInterrupted()) {
+		    throw new CancellationException("Loading of map " + dir + " cancelled");
+		}
+		System.err.println("Map " + dir + ": " + ex.getMessage());
+		return new Graph(new double[0], new double[0], 0, new int[0], new int[0], 0);
+	  }
+    }
+
+    /**
+     * Parses the map's text files into a new <code>Graph</code> on the
+     * fork/join pool, dropping self-loops and duplicate edges.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return the parsed graph
+     */
+    private Graph parseChunks(String dir) {
+	  double[] pointX = new double[0];
+	  double[] pointY = new double[0];
+	  int[] from = new int[0];
+	  int[] to = new int[0];
+
+	  long total = textSize(dir);
+	  long read = 0;
+
+	  try {
+		byte[] data = Files.readAllBytes(Paths.get("maps", dir, "nodes"));
+		TextMapParser nodes = new TextMapParser(data);
+		pointX = new double[nodes.recordsCount()];
+		pointY = new double[nodes.recordsCount()];
+		nodes.parseNodes(pointX, pointY, 0);
+		read += data.length;
+	  } catch (IOException ex) {
+	  }
+	  listener.progress(read, total, pointX.length, 0);
+
+	  try {
+		byte[] data = Files.readAllBytes(Paths.get("maps", dir, "edges"));
+		TextMapParser edges = new TextMapParser(data);
+		from = new int[edges.recordsCount()];
+		to = new int[edges.recordsCount()];
+		edges.parseEdges(from, to, 0);
+		read += data.length;
+	  } catch (IOException ex) {
+	  }
+	  listener.progress(read, total, pointX.length, from.length);
+
+	  int edgesCount = canonicalizeEdges(from, to, from.length);
+	  return new Graph(pointX, pointY, pointX.length, from, to, edgesCount);
+    }
+
+    /**
+     * Parses the map's text files into a new <code>Graph</code> line by line,
+     * dropping self-loops and duplicate edges.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return the parsed graph
+     */
+    private Graph parseLines(String dir) {
+	  int nodesCount = 0;
+	  double[] pointX = new double[1024];
+	  double[] pointY = new double[1024];
+	  int edgesCount = 0;
+	  int[] from = new int[1024];
+	  int[] to = new int[1024];
 
 	  try (BufferedReader br = new BufferedReader(new FileReader("maps/" + dir + "/nodes"))) {
 		String sCurrentLine;
@@ -56,7 +416,13 @@ public class MapLoader {
 		while ((sCurrentLine = br.readLine()) != null) {
 		    String[] entry;
 		    entry = sCurrentLine.split(" ", 5);
-		    n.add(new Node(Integer.parseInt(entry[0]), Double.parseDouble(entry[1]), Double.parseDouble(entry[2])));
+		    if (nodesCount == pointX.length) {
+			  pointX = Arrays.copyOf(pointX, nodesCount * 2);
+			  pointY = Arrays.copyOf(pointY, nodesCount * 2);
+		    }
+		    pointX[nodesCount] = Double.parseDouble(entry[1]);
+		    pointY[nodesCount] = Double.parseDouble(entry[2]);
+		    nodesCount++;
 		}
 	  } catch (IOException ex) {
 	  }
@@ -68,12 +434,165 @@ public class MapLoader {
 		while ((sCurrentLine = br.readLine()) != null) {
 		    String[] entry;
 		    entry = sCurrentLine.split(" ", 2);
-		    e.add(new Edge(Integer.parseInt(entry[0]), Integer.parseInt(entry[1])));
+		    if (edgesCount == from.length) {
+			  from = Arrays.copyOf(from, edgesCount * 2);
+			  to = Arrays.copyOf(to, edgesCount * 2);
+		    }
+		    from[edgesCount] = Integer.parseInt(entry[0]);
+		    to[edgesCount] = Integer.parseInt(entry[1]);
+		    edgesCount++;
 		}
 
 	  } catch (IOException ex) {
 	  }
 
-	  StateSpace.setStateSpace(n, e);
+	  long total = textSize(dir);
+	  listener.progress(total, total, nodesCount, edgesCount);
+
+	  edgesCount = canonicalizeEdges(from, to, edgesCount);
+	  return new Graph(pointX, pointY, nodesCount, from, to, edgesCount);
+    }
+
+    /**
+     * Finds one of a map's text files. The plain file is preferred, its
+     * gzipped version is used only if there is no plain one.
+     *
+     * @param map the map's directory
+     * @param name name of the plain file, "nodes" or "edges"
+     * @return path to the file, the plain one if neither exists
+     */
+    static Path textFile(Path map, String name) {
+	  Path plain = map.resolve(name);
+	  Path compressed = map.resolve(name + CompressedMapReader.SUFFIX);
+	  return Files.notExists(plain) && Files.exists(compressed) ? compressed : plain;
+    }
+
+    /**
+     * Checks whether a map's text files are gzipped.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return <code>true</code> if at least one of them is
+     */
+    private static boolean isCompressed(String dir) {
+	  Path map = Paths.get("maps", dir);
+	  return textFile(map, "nodes").toString().endsWith(CompressedMapReader.SUFFIX)
+		    || textFile(map, "edges").toString().endsWith(CompressedMapReader.SUFFIX);
+    }
+
+    /**
+     * Gets the size of the map's text files.
+     *
+     * @param dir map's directory name in the "maps" directory
+     * @return size of the files that exist in bytes
+     */
+    private static long textSize(String dir) {
+	  long size = 0;
+	  for (String name : new String[]{"nodes", "edges"}) {
+		try {
+		    size += Files.size(textFile(Paths.get("maps", dir), name));
+		} catch (IOException ex) {
+		}
+	  }
+	  return size;
+    }
+
+    /**
+     * Rewrites every edge so that it leads from the lower id to the higher one,
+     * drops self-loops and duplicates and sorts the edges by the lower id,
+     * then by the higher one. That is the order in which
+     * <code>StreamingMapReader</code> takes the edges from the adjacency
+     * lists, so every way of parsing gives the same edge list, and the same
+     * seed gives the same run. The arrays are compacted in place.
+     *
+     * @param from ids of the nodes the edges lead from
+     * @param to ids of the nodes the edges lead to
+     * @param count number of edges in the arrays
+     * @return number of edges kept
+     */
+    private int canonicalizeEdges(int[] from, int[] to, int count) {
+	  int kept = 0;
+	  int lastFrom = -1;
+	  for (int e = 0; e < count; e++) {
+		int a = Math.min(from[e], to[e]);
+		int b = Math.max(from[e], to[e]);
+		if (a == b) {
+		    selfLoopsRemoved++;
+		} else {
+		    from[kept] = a;
+		    to[kept] = b;
+		    kept++;
+		    lastFrom = Math.max(lastFrom, a);
+		}
+	  }
+
+	  // bucket the higher ids by the lower one
+	  int[] start = new int[lastFrom + 2];
+	  for (int e = 0; e < kept; e++) {
+		start[from[e] + 1]++;
+	  }
+	  for (int a = 0; a <= lastFrom; a++) {
+		start[a + 1] += start[a];
+	  }
+	  int[] fill = Arrays.copyOf(start, lastFrom + 1);
+	  int[] higher = new int[kept];
+	  for (int e = 0; e < kept; e++) {
+		higher[fill[from[e]]++] = to[e];
+	  }
+
+	  // sort every bucket, the duplicates end up next to each other
+	  int size = 0;
+	  for (int a = 0; a <= lastFrom; a++) {
+		Arrays.sort(higher, start[a], start[a + 1]);
+		for (int k = start[a]; k < start[a + 1]; k++) {
+		    if (k > start[a] && higher[k] == higher[k - 1]) {
+			  duplicateEdgesRemoved++;
+		    } else {
+			  from[size] = a;
+			  to[size] = higher[k];
+			  size++;
+		    }
+		}
+	  }
+	  return size;
+    }
+
+    /**
+     * Gets the graph that has been loaded.
+     *
+     * @return the loaded graph
+     */
+    public Graph getGraph() {
+	  return graph;
+    }
+
+    /**
+     * Gets the number of self-loops dropped while loading the map.
+     *
+     * @return number of removed self-loops
+     */
+    public int getSelfLoopsRemoved() {
+	  return selfLoopsRemoved;
+    }
+
+    /**
+     * Gets the peak heap usage while the map was being parsed by
+     * <code>Parsing.STREAMING</code>. It is the sum of the peaks of the heap
+     * memory pools, so it is an upper bound, and it includes whatever else
+     * the program allocated at the same time.
+     *
+     * @return peak heap usage in bytes, 0 if the map was not parsed that way
+     */
+    public long getPeakHeapUsed() {
+	  return peakHeapUsed;
+    }
+
+    /**
+     * Gets the number of duplicate edges dropped while loading the map. An edge
+     * listed in both directions counts as a duplicate.
+     *
+     * @return number of removed duplicate edges
+     */
+    public int getDuplicateEdgesRemoved() {
+	  return duplicateEdgesRemoved;
     }
 }
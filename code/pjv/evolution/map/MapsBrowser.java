@@ -23,7 +23,7 @@
  */
 package pjv.evolution.map;
 
-import java.io.File;
+import java.util.List;
 
 /**
  * Map finder.
@@ -33,13 +33,17 @@ import java.io.File;
 public class MapsBrowser {
 
     /**
-     * Find all maps directories in the "maps" folder.
+     * Find all maps directories in the "maps" folder. The maps are taken from
+     * the catalog, so the folder is not scanned again.
      *
      * @return String[] of directories
      */
     public static String[] listAvailableMaps() {
-	  File file = new File("maps");
-	  String[] directories = file.list((File current, String name) -> new File(current, name).isDirectory());
+	  List<MapInfo> maps = MapCatalog.getDefault().getMaps();
+	  String[] directories = new String[maps.size()];
+	  for (int i = 0; i < directories.length; i++) {
+		directories[i] = maps.get(i).getName();
+	  }
 	  return directories;
     }
 }
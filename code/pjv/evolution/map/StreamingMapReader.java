@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import pjv.evolution.util.Graph;
+
+/**
+ * Reader of the map text files for maps that only just fit in memory. The
+ * files are read through a fixed-size buffer, twice: the first pass counts
+ * the records and the degrees of the nodes, the second one fills arrays that
+ * already have their final size. Duplicate edges are found by sorting the
+ * adjacency lists, so there is no hash set of all the edges either.
+ *
+ * The edge list of the graph is in the order of the adjacency lists, not in
+ * the order of the file.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class StreamingMapReader {
+
+    /**
+     * Size of the read buffer. It grows only for a line longer than that.
+     */
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    /**
+     * File with the nodes.
+     */
+    private final Path nodesFile;
+
+    /**
+     * File with the edges.
+     */
+    private final Path edgesFile;
+
+    /**
+     * Reads the files block by block, with the same buffer for all passes.
+     */
+    private TextBlockReader blocks = new TextBlockReader(BUFFER_SIZE);
+
+    /**
+     * Ids the edges of the block being processed lead from.
+     */
+    private int[] blockFrom = new int[0];
+
+    /**
+     * Ids the edges of the block being processed lead to.
+     */
+    private int[] blockTo = new int[0];
+
+    /**
+     * Number of nodes.
+     */
+    private int nodesCount = 0;
+
+    /**
+     * Start of each node's neighbours, one more entry than there are nodes.
+     */
+    private int[] offsets;
+
+    /**
+     * Concatenated adjacency lists.
+     */
+    private int[] neighbors;
+
+    /**
+     * Next free entry of each node's adjacency list during the second pass.
+     */
+    private int[] fill;
+
+    /**
+     * Receives the progress after every block.
+     */
+    private final MapLoadListener listener;
+
+    /**
+     * Number of bytes read so far, in all the passes.
+     */
+    private long bytesRead = 0;
+
+    /**
+     * Number of bytes all the passes read.
+     */
+    private long bytesTotal = 0;
+
+    /**
+     * Number of nodes parsed so far.
+     */
+    private int nodesParsed = 0;
+
+    /**
+     * Number of edges put in the adjacency lists so far.
+     */
+    private int edgesParsed = 0;
+
+    /**
+     * Number of self-loops dropped.
+     */
+    private int selfLoopsRemoved = 0;
+
+    /**
+     * Number of duplicate edges dropped.
+     */
+    private int duplicateEdgesRemoved = 0;
+
+    /**
+     * Prepares the reading of a map.
+     *
+     * @param nodesFile file with the nodes
+     * @param edgesFile file with the edges
+     * @param listener receives the progress after every block
+     */
+    StreamingMapReader(Path nodesFile, Path edgesFile, MapLoadListener listener) {
+	  this.nodesFile = nodesFile;
+	  this.edgesFile = edgesFile;
+	  this.listener = listener;
+    }
+
+    /**
+     * Reads the map.
+     *
+     * @return the graph
+     * @throws IOException if a file cannot be read, refers to nodes that do
+     * not exist or changes between the passes
+     * @throws InterruptedIOException if the thread has been interrupted, the
+     * interrupt status stays set
+     */
+    Graph read() throws IOException {
+	  bytesTotal = 2 * (Files.size(nodesFile) + Files.size(edgesFile));
+
+	  // nodes: count, then parse into arrays of the final size
+	  int[] count = {0};
+	  forEachBlock(nodesFile, (parser) -> {
+		count[0] += parser.recordsCount();
+	  });
+	  nodesCount = count[0];
+	  double[] pointX = new double[nodesCount];
+	  double[] pointY = new double[nodesCount];
+	  count[0] = 0;
+	  forEachBlock(nodesFile, (parser) -> {
+		if (count[0] + parser.recordsCount() > nodesCount) {
+		    throw new IOException("Map changed while loading: " + nodesFile);
+		}
+		parser.parseNodes(pointX, pointY, count[0]);
+		count[0] += parser.recordsCount();
+		nodesParsed = count[0];
+	  });
+
+	  // edges: count the degrees, then scatter into the adjacency lists
+	  offsets = new int[nodesCount + 1];
+	  forEachBlock(edgesFile, this::countDegrees);
+	  for (int i = 0; i < nodesCount; i++) {
+		offsets[i + 1] += offsets[i];
+	  }
+	  neighbors = new int[offsets[nodesCount]];
+	  fill = Arrays.copyOf(offsets, nodesCount);
+	  forEachBlock(edgesFile, this::scatterEdges);
+	  for (int i = 0; i < nodesCount; i++) {
+		if (fill[i] != offsets[i + 1]) {
+		    throw new IOException("Map changed while loading: " + edgesFile);
+		}
+	  }
+	  fill = null;
+	  blockFrom = null;
+	  blockTo = null;
+	  blocks = null;
+
+	  removeDuplicates();
+
+	  // the edge list in the order of the sorted adjacency lists, which is
+	  // the canonical order the other parsings sort their edges into
+	  int edgesCount = neighbors.length / 2;
+	  int[] edgeFrom = new int[edgesCount];
+	  int[] edgeTo = new int[edgesCount];
+	  int e = 0;
+	  for (int u = 0; u < nodesCount; u++) {
+		for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+		    if (neighbors[k] > u) {
+			  edgeFrom[e] = u;
+			  edgeTo[e] = neighbors[k];
+			  e++;
+		    }
+		}
+	  }
+	  return Graph.fromAdjacency(pointX, pointY, edgeFrom, edgeTo, offsets, neighbors);
+    }
+
+    /**
+     * First pass over the edges, counts the neighbours of every node into
+     * <code>offsets[id + 1]</code>.
+     *
+     * @param parser parser of a block of the file
+     * @throws IOException if an edge refers to a node that does not exist
+     */
+    private void countDegrees(TextMapParser parser) throws IOException {
+	  int records = parseBlock(parser);
+	  for (int e = 0; e < records; e++) {
+		int a = blockFrom[e];
+		int b = blockTo[e];
+		if (a < 0 || a >= nodesCount || b < 0 || b >= nodesCount) {
+		    throw new IOException("Edge " + a + " " + b + " refers to a node that does not exist: " + edgesFile);
+		}
+		if (a == b) {
+		    selfLoopsRemoved++;
+		} else {
+		    offsets[a + 1]++;
+		    offsets[b + 1]++;
+		}
+	  }
+    }
+
+    /**
+     * Second pass over the edges, puts every edge in the adjacency lists of
+     * both its nodes.
+     *
+     * @param parser parser of a block of the file
+     * @throws IOException if the file changed since the first pass
+     */
+    private void scatterEdges(TextMapParser parser) throws IOException {
+	  int records = parseBlock(parser);
+	  for (int e = 0; e < records; e++) {
+		int a = blockFrom[e];
+		int b = blockTo[e];
+		if (a == b) {
+		    continue;
+		}
+		if (a < 0 || a >= nodesCount || b < 0 || b >= nodesCount
+			  || fill[a] == offsets[a + 1] || fill[b] == offsets[b + 1]) {
+		    throw new IOException("Map changed while loading: " + edgesFile);
+		}
+		neighbors[fill[a]++] = b;
+		neighbors[fill[b]++] = a;
+	  }
+	  edgesParsed += records;
+    }
+
+    /**
+     * Parses the edges of a block into <code>blockFrom</code> and
+     * <code>blockTo</code>.
+     *
+     * @param parser parser of the block
+     * @return number of edges in the block
+     */
+    private int parseBlock(TextMapParser parser) {
+	  int records = parser.recordsCount();
+	  if (blockFrom.length < records) {
+		blockFrom = new int[records];
+		blockTo = new int[records];
+	  }
+	  parser.parseEdges(blockFrom, blockTo, 0);
+	  return records;
+    }
+
+    /**
+     * Sorts every adjacency list and drops repeated neighbours, compacting the
+     * arrays in place.
+     */
+    private void removeDuplicates() {
+	  int size = 0;
+	  for (int u = 0; u < nodesCount; u++) {
+		int start = offsets[u];
+		int end = offsets[u + 1];
+		Arrays.sort(neighbors, start, end);
+		offsets[u] = size;
+		for (int k = start; k < end; k++) {
+		    if (k == start || neighbors[k] != neighbors[k - 1]) {
+			  neighbors[size++] = neighbors[k];
+		    }
+		}
+	  }
+	  // every duplicate was in the lists of both its nodes
+	  duplicateEdgesRemoved = (offsets[nodesCount] - size) / 2;
+	  offsets[nodesCount] = size;
+	  if (size < neighbors.length) {
+		neighbors = Arrays.copyOf(neighbors, size);
+	  }
+    }
+
+    /**
+     * Reads a file block by block, every block ending with a whole line.
+     *
+     * @param file the file
+     * @param action what to do with each block
+     * @throws IOException if the file cannot be read or the action fails
+     */
+    private void forEachBlock(Path file, TextBlockReader.BlockAction action) throws IOException {
+	  try (InputStream in = Files.newInputStream(file)) {
+		blocks.forEachBlock(in, file, (parser) -> {
+		    action.accept(parser);
+		    bytesRead += parser.length();
+		    listener.progress(bytesRead, bytesTotal, nodesParsed, edgesParsed);
+		});
+	  }
+    }
+
+    /**
+     * Gets the number of self-loops dropped while reading.
+     *
+     * @return number of removed self-loops
+     */
+    int getSelfLoopsRemoved() {
+	  return selfLoopsRemoved;
+    }
+
+    /**
+     * Gets the number of duplicate edges dropped while reading.
+     *
+     * @return number of removed duplicate edges
+     */
+    int getDuplicateEdgesRemoved() {
+	  return duplicateEdgesRemoved;
+    }
+}
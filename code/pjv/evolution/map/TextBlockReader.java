@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads map text through a fixed-size buffer and hands it over block by
+ * block, every block ending with a whole line. Used by the readers that never
+ * hold a whole file in memory; the buffer is kept for the next stream.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class TextBlockReader {
+
+    /**
+     * The read buffer.
+     */
+    private byte[] buffer;
+
+    /**
+     * Creates the reader.
+     *
+     * @param bufferSize size of the buffer; it grows only for a line longer
+     * than that
+     */
+    TextBlockReader(int bufferSize) {
+	  buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Reads a stream to the end, block by block.
+     *
+     * @param in the stream
+     * @param file the file the stream reads, for the messages
+     * @param action what to do with each block
+     * @throws IOException if the stream cannot be read or the action fails
+     * @throws InterruptedIOException if the thread has been interrupted, the
+     * interrupt status stays set
+     */
+    void forEachBlock(InputStream in, Path file, BlockAction action) throws IOException {
+	  int filled = 0;
+	  while (true) {
+		if (Thread.currentThread().isInterrupted()) {
+		    throw new InterruptedIOException("Loading interrupted: " + file);
+		}
+		int read = in.read(buffer, filled, buffer.length - filled);
+		if (read < 0) {
+		    if (filled > 0) {
+			  action.accept(new TextMapParser(buffer, filled));
+		    }
+		    return;
+		}
+		filled += read;
+		if (filled < buffer.length) {
+		    continue;
+		}
+		int end = filled;
+		while (end > 0 && buffer[end - 1] != '\n') {
+		    end--;
+		}
+		if (end == 0) {
+		    // a single line longer than the buffer
+		    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		    continue;
+		}
+		action.accept(new TextMapParser(buffer, end));
+		System.arraycopy(buffer, end, buffer, 0, filled - end);
+		filled -= end;
+	  }
+    }
+
+    /**
+     * Processing of one block of a file.
+     */
+    @FunctionalInterface
+    interface BlockAction {
+
+	  /**
+	   * Processes a block. The parser is only valid until the method
+	   * returns, the buffer is reused for the next block.
+	   *
+	   * @param parser parser of the block
+	   * @throws IOException if the block cannot be processed
+	   */
+	  void accept(TextMapParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.map;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parser of the map text files that works straight on their bytes. The file
+ * is split into newline-aligned chunks and every chunk is parsed on a
+ * fork/join worker, right into the arrays of the result. Each non-blank line
+ * is one record, records keep the order of the lines.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class TextMapParser {
+
+    /**
+     * Smallest chunk worth handing over to a worker.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Powers of ten that are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+	  1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	  1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Largest integer up to which all integers are exact doubles, 2^53.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * The bytes of the file.
+     */
+    private final byte[] data;
+
+    /**
+     * Number of bytes of the data that belong to the file.
+     */
+    private final int length;
+
+    /**
+     * Start of each chunk, the last entry is the length of the data.
+     */
+    private final int[] bounds;
+
+    /**
+     * Index of the first record of each chunk, the last entry is the number
+     * of records.
+     */
+    private final int[] firstRecord;
+
+    /**
+     * Position of the next byte to be parsed, every worker uses its own
+     * parser created by <code>forChunk</code>.
+     */
+    private int pos;
+
+    /**
+     * Splits the data into chunks and counts the records in them.
+     *
+     * @param data the bytes of the file
+     */
+    TextMapParser(byte[] data) {
+	  this(data, data.length);
+    }
+
+    /**
+     * Splits the beginning of a buffer into chunks and counts the records in
+     * them.
+     *
+     * @param data the buffer
+     * @param length number of bytes to be parsed, ending with a whole line
+     */
+    TextMapParser(byte[] data, int length) {
+	  this.data = data;
+	  this.length = length;
+	  int chunks = Math.max(1, Math.min(length / MIN_CHUNK_SIZE, 4 * ForkJoinPool.getCommonPoolParallelism()));
+	  bounds = new int[chunks + 1];
+	  for (int c = 1; c < chunks; c++) {
+		int p = Math.max(bounds[c - 1], (int) ((long) length * c / chunks));
+		while (p < length && data[p - 1] != '\n') {
+		    p++;
+		}
+		bounds[c] = p;
+	  }
+	  bounds[chunks] = length;
+
+	  firstRecord = new int[chunks + 1];
+	  IntStream.range(0, chunks).parallel().forEach((c) -> {
+		firstRecord[c + 1] = countRecords(bounds[c], bounds[c + 1]);
+	  });
+	  for (int c = 0; c < chunks; c++) {
+		firstRecord[c + 1] += firstRecord[c];
+	  }
+    }
+
+    /**
+     * Creates a parser sharing the data and the chunks.
+     *
+     * @param other the parser to share with
+     */
+    private TextMapParser(TextMapParser other) {
+	  this.data = other.data;
+	  this.length = other.length;
+	  this.bounds = other.bounds;
+	  this.firstRecord = other.firstRecord;
+    }
+
+    /**
+     * Gets the number of bytes parsed.
+     *
+     * @return length of the parsed data
+     */
+    int length() {
+	  return length;
+    }
+
+    /**
+     * Gets the number of non-blank lines.
+     *
+     * @return number of records in the file
+     */
+    int recordsCount() {
+	  return firstRecord[firstRecord.length - 1];
+    }
+
+    /**
+     * Parses the file as nodes, one node per line: its id (ignored, the lines
+     * are numbered in order) and the X and Y coordinates.
+     *
+     * @param pointX array for the X coordinates, at least
+     * <code>recordsCount()</code> long
+     * @param pointY array for the Y coordinates, at least
+     * <code>recordsCount()</code> long
+     * @param base index in the arrays for the first record
+     */
+    void parseNodes(double[] pointX, double[] pointY, int base) {
+	  IntStream.range(0, bounds.length - 1).parallel().forEach((c) -> {
+		TextMapParser parser = new TextMapParser(this);
+		int record = base + firstRecord[c];
+		parser.pos = bounds[c];
+		while (parser.nextRecord(bounds[c + 1])) {
+		    parser.skipField();
+		    pointX[record] = parser.parseDouble();
+		    pointY[record] = parser.parseDouble();
+		    parser.skipLine();
+		    record++;
+		}
+	  });
+    }
+
+    /**
+     * Parses the file as edges, one edge per line given by the ids of its
+     * nodes.
+     *
+     * @param from array for the ids the edges lead from, at least
+     * <code>recordsCount()</code> long
+     * @param to array for the ids the edges lead to, at least
+     * <code>recordsCount()</code> long
+     * @param base index in the arrays for the first record
+     */
+    void parseEdges(int[] from, int[] to, int base) {
+	  IntStream.range(0, bounds.length - 1).parallel().forEach((c) -> {
+		TextMapParser parser = new TextMapParser(this);
+		int record = base + firstRecord[c];
+		parser.pos = bounds[c];
+		while (parser.nextRecord(bounds[c + 1])) {
+		    from[record] = parser.parseInt();
+		    to[record] = parser.parseInt();
+		    parser.skipLine();
+		    record++;
+		}
+	  });
+    }
+
+    /**
+     * Counts the non-blank lines in a part of the data.
+     *
+     * @param start first byte of the part
+     * @param end end of the part, exclusive
+     * @return number of records
+     */
+    private int countRecords(int start, int end) {
+	  int count = 0;
+	  boolean blank = true;
+	  for (int p = start; p < end; p++) {
+		byte b = data[p];
+		if (b == '\n') {
+		    if (!blank) {
+			  count++;
+		    }
+		    blank = true;
+		} else if (b > ' ') {
+		    blank = false;
+		}
+	  }
+	  return blank ? count : count + 1;
+    }
+
+    /**
+     * Moves to the start of the next non-blank line.
+     *
+     * @param end end of the chunk
+     * @return <code>false</code> if there is no other record in the chunk
+     */
+    private boolean nextRecord(int end) {
+	  while (pos < end && data[pos] <= ' ') {
+		pos++;
+	  }
+	  return pos < end;
+    }
+
+    /**
+     * Skips the spaces and tabs before a field.
+     *
+     * @return position of the first byte of the field
+     */
+    private int skipBlanks() {
+	  while (pos < length && (data[pos] == ' ' || data[pos] == '\t')) {
+		pos++;
+	  }
+	  return pos;
+    }
+
+    /**
+     * Skips a field and the blanks before it.
+     */
+    private void skipField() {
+	  skipBlanks();
+	  while (pos < length && data[pos] > ' ') {
+		pos++;
+	  }
+    }
+
+    /**
+     * Skips the rest of the line, including the newline.
+     */
+    private void skipLine() {
+	  while (pos < length && data[pos] != '\n') {
+		pos++;
+	  }
+	  pos++;
+    }
+
+    /**
+     * Parses a decimal integer field.
+     *
+     * @return the value
+     * @throws NumberFormatException if the field is not an int
+     */
+    private int parseInt() {
+	  int start = skipBlanks();
+	  boolean negative = pos < length && data[pos] == '-';
+	  if (negative) {
+		pos++;
+	  }
+	  long value = 0;
+	  int digits = 0;
+	  while (pos < length && data[pos] >= '0' && data[pos] <= '9') {
+		value = value * 10 + (data[pos++] - '0');
+		if (++digits > 10) {
+		    break;
+		}
+	  }
+	  if (negative) {
+		value = -value;
+	  }
+	  if (digits == 0 || digits > 10 || (pos < length && data[pos] > ' ')
+		    || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+		throw new NumberFormatException("For input string: \"" + field(start) + "\"");
+	  }
+	  return (int) value;
+    }
+
+    /**
+     * Parses a decimal floating point field. Plain decimals with a mantissa
+     * and a power of ten that are exact doubles are computed with a single
+     * rounded operation, which gives the same result as
+     * <code>Double.parseDouble</code>. Anything else is handed over to it.
+     *
+     * @return the value
+     * @throws NumberFormatException if the field is not a number
+     */
+    private double parseDouble() {
+	  int start = skipBlanks();
+	  boolean negative = pos < length && data[pos] == '-';
+	  if (negative) {
+		pos++;
+	  }
+	  long mantissa = 0;
+	  int digits = 0;
+	  int scale = 0;
+	  boolean point = false;
+	  boolean exact = true;
+	  while (pos < length) {
+		byte b = data[pos];
+		if (b >= '0' && b <= '9') {
+		    if (mantissa < MAX_EXACT_MANTISSA / 10) {
+			  mantissa = mantissa * 10 + (b - '0');
+			  if (point) {
+				scale++;
+			  }
+		    } else {
+			  exact = false;
+		    }
+		    digits++;
+		} else if (b == '.' && !point) {
+		    point = true;
+		} else {
+		    break;
+		}
+		pos++;
+	  }
+	  if (digits > 0 && exact && scale < POWERS_OF_TEN.length && (pos == length || data[pos] <= ' ')) {
+		double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	  }
+
+	  // exponents, long mantissas and the like
+	  pos = start;
+	  skipField();
+	  return Double.parseDouble(field(start));
+    }
+
+    /**
+     * Gets the text of a field.
+     *
+     * @param start first byte of the field
+     * @return the field as a string
+     */
+    private String field(int start) {
+	  int end = start;
+	  while (end < length && data[end] > ' ') {
+		end++;
+	  }
+	  return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.reduce;
+
+/**
+ * Record of one degree-2 fold. Node <code>v</code> with the two non-adjacent
+ * neighbours <code>a</code> and <code>b</code> was replaced by a new node
+ * <code>w</code> adjacent to all the neighbours of <code>a</code> and
+ * <code>b</code>.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+final class Fold {
+
+    /**
+     * The folded node of degree 2.
+     */
+    final int v;
+
+    /**
+     * First neighbour of the folded node.
+     */
+    final int a;
+
+    /**
+     * Second neighbour of the folded node.
+     */
+    final int b;
+
+    /**
+     * The node that replaced all three.
+     */
+    final int w;
+
+    /**
+     * Records a fold.
+     *
+     * @param v the folded node of degree 2
+     * @param a first neighbour of the folded node
+     * @param b second neighbour of the folded node
+     * @param w the node that replaced all three
+     */
+    Fold(int v, int a, int b, int w) {
+	  this.v = v;
+	  this.a = a;
+	  this.b = b;
+	  this.w = w;
+    }
+
+    /**
+     * Undoes the fold in a cover. If <code>w</code> is in the cover,
+     * <code>a</code> and <code>b</code> are, otherwise <code>v</code> is.
+     *
+     * @param cover selection of every node, <code>w</code> already decided
+     */
+    void unfold(boolean[] cover) {
+	  cover[a] = cover[w];
+	  cover[b] = cover[w];
+	  cover[v] = !cover[w];
+    }
+}
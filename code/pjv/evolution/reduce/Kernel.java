@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.reduce;
+
+import java.util.List;
+import pjv.evolution.util.Graph;
+
+/**
+ * Result of the reductions: the kernel that is left to be solved and the
+ * trace needed to turn a vertex cover of the kernel back into a vertex cover
+ * of the whole map.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class Kernel {
+
+    /**
+     * Graph of the whole map.
+     */
+    private final Graph original;
+
+    /**
+     * The reduced graph.
+     */
+    private final Graph graph;
+
+    /**
+     * Node of the reduction each kernel node stands for.
+     */
+    private final int[] kernelNodes;
+
+    /**
+     * Nodes the reductions put in the cover. Nodes above the map's nodes are
+     * the ones created by folding.
+     */
+    private final boolean[] taken;
+
+    /**
+     * Folds in the order they were done.
+     */
+    private final List<Fold> folds;
+
+    /**
+     * Number of nodes removed by each rule.
+     */
+    private final int looped, isolated, pendant, folded, dominated;
+
+    /**
+     * Creates the kernel.
+     *
+     * @param original graph of the whole map
+     * @param graph the reduced graph
+     * @param kernelNodes node of the reduction each kernel node stands for
+     * @param taken nodes the reductions put in the cover
+     * @param folds folds in the order they were done
+     * @param looped number of nodes removed for having a self-loop
+     * @param isolated number of nodes removed for having no edges
+     * @param pendant number of nodes removed by the degree-1 rule
+     * @param folded number of nodes removed by the degree-2 rule
+     * @param dominated number of nodes removed by the domination rule
+     */
+    Kernel(Graph original, Graph graph, int[] kernelNodes, boolean[] taken, List<Fold> folds, int looped, int isolated, int pendant, int folded, int dominated) {
+	  this.original = original;
+	  this.graph = graph;
+	  this.kernelNodes = kernelNodes;
+	  this.taken = taken;
+	  this.folds = folds;
+	  this.looped = looped;
+	  this.isolated = isolated;
+	  this.pendant = pendant;
+	  this.folded = folded;
+	  this.dominated = dominated;
+    }
+
+    /**
+     * Gets the reduced graph that is left to be solved.
+     *
+     * @return graph of the kernel
+     */
+    public Graph getGraph() {
+	  return graph;
+    }
+
+    /**
+     * Gets the graph the kernel was made from.
+     *
+     * @return graph of the whole map
+     */
+    public Graph getOriginalGraph() {
+	  return original;
+    }
+
+    /**
+     * Tells whether the reductions removed anything at all.
+     *
+     * @return <code>true</code> if the kernel is the whole map
+     */
+    public boolean isTrivial() {
+	  return graph.nodesCount() == original.nodesCount() && folds.isEmpty();
+    }
+
+    /**
+     * Turns a vertex cover of the kernel into a vertex cover of the whole map.
+     * Nodes taken by the reductions are added and the folds are undone from
+     * the last one, so a valid cover of the kernel gives a valid cover of the
+     * map.
+     *
+     * @param kernelCover selection of every node of the kernel
+     * @return selection of every node of the map
+     */
+    public boolean[] lift(boolean[] kernelCover) {
+	  boolean[] cover = taken.clone();
+	  for (int i = 0; i < kernelNodes.length; i++) {
+		cover[kernelNodes[i]] = kernelCover[i];
+	  }
+	  for (int i = folds.size() - 1; i >= 0; i--) {
+		folds.get(i).unfold(cover);
+	  }
+	  boolean[] mapCover = new boolean[original.nodesCount()];
+	  System.arraycopy(cover, 0, mapCover, 0, mapCover.length);
+	  return mapCover;
+    }
+
+    @Override
+    public String toString() {
+	  StringBuilder sb = new StringBuilder();
+
+	  sb.append("kernel: ").append(graph.nodesCount()).append(" of ").append(original.nodesCount()).append(" nodes, ");
+	  sb.append(graph.edgesCount()).append(" of ").append(original.edgesCount()).append(" edges");
+	  sb.append(" (self-loops: ").append(looped);
+	  sb.append(", isolated: ").append(isolated);
+	  sb.append(", pendant: ").append(pendant);
+	  sb.append(", folded: ").append(folded);
+	  sb.append(", dominated: ").append(dominated).append(")");
+
+	  return sb.toString();
+    }
+}
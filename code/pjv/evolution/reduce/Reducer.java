@@ -0,0 +1,467 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.reduce;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import pjv.evolution.util.Graph;
+
+/**
+ * Shrinks the vertex cover problem of a map with the standard reduction rules
+ * before it is handed over to the evolution:
+ * <ul>
+ * <li>a node with a self-loop is put in the cover, no other node covers the
+ * loop,</li>
+ * <li>a node without edges is left out of the cover,</li>
+ * <li>the neighbour of a node with one edge is put in the cover,</li>
+ * <li>a node with two edges is folded together with its neighbours, or its
+ * neighbours are put in the cover if they are adjacent,</li>
+ * <li>a node whose closed neighbourhood contains the closed neighbourhood of
+ * a neighbour is put in the cover.</li>
+ * </ul>
+ * The rules keep the size of the minimum vertex cover, they do not know about
+ * the extra weights of the fitness function.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class Reducer {
+
+    /**
+     * Node is still in the graph.
+     */
+    private static final byte ALIVE = 0;
+
+    /**
+     * Node was put in the cover.
+     */
+    private static final byte TAKEN = 1;
+
+    /**
+     * Node was left out of the cover.
+     */
+    private static final byte LEFT_OUT = 2;
+
+    /**
+     * Node was folded, the cover decides about it when the fold is undone.
+     */
+    private static final byte FOLDED = 3;
+
+    /**
+     * Graph to be reduced.
+     */
+    private final Graph graph;
+
+    /**
+     * Number of nodes, including the ones created by folding.
+     */
+    private int nodesCount;
+
+    /**
+     * Neighbours of each node. Entries of nodes that are no longer alive are
+     * dropped lazily, see <code>compact</code>.
+     */
+    private int[][] adjacency;
+
+    /**
+     * Number of used entries in each adjacency list.
+     */
+    private int[] adjacencySize;
+
+    /**
+     * State of each node.
+     */
+    private byte[] state;
+
+    /**
+     * X coordinates, folded nodes take the place of the node they replaced.
+     */
+    private double[] pointX;
+
+    /**
+     * Y coordinates, folded nodes take the place of the node they replaced.
+     */
+    private double[] pointY;
+
+    /**
+     * Marks of the neighbourhood being compared.
+     */
+    private int[] mark;
+
+    /**
+     * Current mark, it changes for every comparison so the marks never have
+     * to be cleared.
+     */
+    private int stamp = 0;
+
+    /**
+     * Nodes to be looked at.
+     */
+    private int[] stack;
+
+    /**
+     * Number of nodes on the stack.
+     */
+    private int stackSize = 0;
+
+    /**
+     * Node is on the stack.
+     */
+    private boolean[] stacked;
+
+    /**
+     * Folds in the order they were done.
+     */
+    private final List<Fold> folds = new ArrayList<>();
+
+    /**
+     * Number of nodes removed by each rule.
+     */
+    private int looped = 0, isolated = 0, pendant = 0, folded = 0, dominated = 0;
+
+    /**
+     * Prepares the reduction of a graph.
+     *
+     * @param graph the graph to be reduced
+     */
+    public Reducer(Graph graph) {
+	  this.graph = graph;
+    }
+
+    /**
+     * Applies the reduction rules until none of them can be used.
+     *
+     * @return the kernel and the trace to lift its covers back to the map
+     */
+    public Kernel reduce() {
+	  nodesCount = graph.nodesCount();
+	  int capacity = nodesCount + 16;
+	  adjacency = new int[capacity][];
+	  adjacencySize = new int[capacity];
+	  state = new byte[capacity];
+	  pointX = new double[capacity];
+	  pointY = new double[capacity];
+	  mark = new int[capacity];
+	  stacked = new boolean[capacity];
+	  stack = new int[capacity];
+
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  for (int u = 0; u < nodesCount; u++) {
+		adjacency[u] = Arrays.copyOfRange(neighbors, offsets[u], offsets[u + 1]);
+		adjacencySize[u] = adjacency[u].length;
+		pointX[u] = graph.getPointX(u);
+		pointY[u] = graph.getPointY(u);
+	  }
+	  // the other rules assume that a node is not its own neighbour
+	  for (int u = 0; u < nodesCount; u++) {
+		if (state[u] == ALIVE && hasSelfLoop(u)) {
+		    take(u);
+		    looped++;
+		}
+	  }
+	  // popped from the top, so the nodes are looked at in id order
+	  for (int u = nodesCount - 1; u >= 0; u--) {
+		push(u);
+	  }
+
+	  while (stackSize > 0) {
+		int v = stack[--stackSize];
+		stacked[v] = false;
+		if (state[v] == ALIVE) {
+		    reduce(v);
+		}
+	  }
+
+	  return buildKernel();
+    }
+
+    /**
+     * Tries the rules on a node.
+     *
+     * @param v id of the node
+     */
+    private void reduce(int v) {
+	  int degree = compact(v);
+	  int[] neighbors = adjacency[v];
+	  if (degree == 0) {
+		state[v] = LEFT_OUT;
+		isolated++;
+	  } else if (degree == 1) {
+		take(neighbors[0]);
+		state[v] = LEFT_OUT;
+		pendant += 2;
+	  } else if (degree == 2) {
+		int a = neighbors[0];
+		int b = neighbors[1];
+		if (adjacent(a, b)) {
+		    // triangle, two of its nodes have to be in the cover
+		    take(a);
+		    take(b);
+		    state[v] = LEFT_OUT;
+		    folded += 3;
+		} else {
+		    fold(v, a, b);
+		    folded += 2;
+		}
+	  } else {
+		for (int i = 0; i < degree; i++) {
+		    int u = neighbors[i];
+		    if (compact(u) >= degree && dominates(u, v)) {
+			  take(u);
+			  dominated++;
+			  push(v);
+			  return;
+		    }
+		}
+	  }
+    }
+
+    /**
+     * Tells whether a node is its own neighbour.
+     *
+     * @param v id of the node
+     * @return <code>true</code> if the node has a self-loop
+     */
+    private boolean hasSelfLoop(int v) {
+	  for (int i = 0; i < adjacencySize[v]; i++) {
+		if (adjacency[v][i] == v) {
+		    return true;
+		}
+	  }
+	  return false;
+    }
+
+    /**
+     * Drops the entries of nodes that are no longer alive from an adjacency
+     * list.
+     *
+     * @param v id of the node
+     * @return number of alive neighbours
+     */
+    private int compact(int v) {
+	  int[] neighbors = adjacency[v];
+	  int size = 0;
+	  for (int i = 0; i < adjacencySize[v]; i++) {
+		if (state[neighbors[i]] == ALIVE) {
+		    neighbors[size++] = neighbors[i];
+		}
+	  }
+	  adjacencySize[v] = size;
+	  return size;
+    }
+
+    /**
+     * Tells whether two nodes share an edge.
+     *
+     * @param a id of the first node
+     * @param b id of the second node
+     * @return <code>true</code> if they are adjacent
+     */
+    private boolean adjacent(int a, int b) {
+	  if (compact(a) > compact(b)) {
+		int swap = a;
+		a = b;
+		b = swap;
+	  }
+	  for (int i = 0; i < adjacencySize[a]; i++) {
+		if (adjacency[a][i] == b) {
+		    return true;
+		}
+	  }
+	  return false;
+    }
+
+    /**
+     * Tells whether the closed neighbourhood of <code>u</code> contains the
+     * closed neighbourhood of its neighbour <code>v</code>. Both adjacency
+     * lists have to be compacted.
+     *
+     * @param u id of the dominating node
+     * @param v id of the dominated node
+     * @return <code>true</code> if <code>u</code> dominates <code>v</code>
+     */
+    private boolean dominates(int u, int v) {
+	  stamp++;
+	  mark[u] = stamp;
+	  for (int i = 0; i < adjacencySize[u]; i++) {
+		mark[adjacency[u][i]] = stamp;
+	  }
+	  for (int i = 0; i < adjacencySize[v]; i++) {
+		if (mark[adjacency[v][i]] != stamp) {
+		    return false;
+		}
+	  }
+	  return true;
+    }
+
+    /**
+     * Puts a node in the cover and removes it from the graph. Its neighbours
+     * have to be looked at again.
+     *
+     * @param u id of the node
+     */
+    private void take(int u) {
+	  state[u] = TAKEN;
+	  for (int i = 0; i < adjacencySize[u]; i++) {
+		push(adjacency[u][i]);
+	  }
+    }
+
+    /**
+     * Replaces a node of degree 2 and its two non-adjacent neighbours by a
+     * single new node adjacent to all the neighbours of the two.
+     *
+     * @param v id of the node of degree 2
+     * @param a id of its first neighbour
+     * @param b id of its second neighbour
+     */
+    private void fold(int v, int a, int b) {
+	  int w = addNode(pointX[v], pointY[v]);
+	  state[v] = FOLDED;
+	  state[a] = FOLDED;
+	  state[b] = FOLDED;
+	  folds.add(new Fold(v, a, b, w));
+
+	  stamp++;
+	  for (int n : new int[]{a, b}) {
+		for (int i = 0; i < adjacencySize[n]; i++) {
+		    int x = adjacency[n][i];
+		    if (state[x] == ALIVE && mark[x] != stamp) {
+			  mark[x] = stamp;
+			  addEdge(w, x);
+			  addEdge(x, w);
+			  push(x);
+		    }
+		}
+	  }
+	  push(w);
+    }
+
+    /**
+     * Creates a new node without edges.
+     *
+     * @param x X coordinate of the node
+     * @param y Y coordinate of the node
+     * @return id of the node
+     */
+    private int addNode(double x, double y) {
+	  if (nodesCount == state.length) {
+		int capacity = state.length * 2;
+		adjacency = Arrays.copyOf(adjacency, capacity);
+		adjacencySize = Arrays.copyOf(adjacencySize, capacity);
+		state = Arrays.copyOf(state, capacity);
+		pointX = Arrays.copyOf(pointX, capacity);
+		pointY = Arrays.copyOf(pointY, capacity);
+		mark = Arrays.copyOf(mark, capacity);
+		stacked = Arrays.copyOf(stacked, capacity);
+	  }
+	  int w = nodesCount++;
+	  adjacency[w] = new int[4];
+	  pointX[w] = x;
+	  pointY[w] = y;
+	  return w;
+    }
+
+    /**
+     * Appends a neighbour to the adjacency list of a node.
+     *
+     * @param u id of the node
+     * @param v id of the neighbour
+     */
+    private void addEdge(int u, int v) {
+	  if (adjacencySize[u] == adjacency[u].length) {
+		adjacency[u] = Arrays.copyOf(adjacency[u], Math.max(4, adjacency[u].length * 2));
+	  }
+	  adjacency[u][adjacencySize[u]++] = v;
+    }
+
+    /**
+     * Puts a node on the stack of nodes to be looked at, unless it already is
+     * there.
+     *
+     * @param v id of the node
+     */
+    private void push(int v) {
+	  if (stacked[v]) {
+		return;
+	  }
+	  if (stackSize == stack.length) {
+		stack = Arrays.copyOf(stack, stack.length * 2);
+	  }
+	  stacked[v] = true;
+	  stack[stackSize++] = v;
+    }
+
+    /**
+     * Builds the graph of the nodes that are left. They keep the order of
+     * their ids, so the map's nodes keep their locality.
+     *
+     * @return the kernel
+     */
+    private Kernel buildKernel() {
+	  int[] kernelId = new int[nodesCount];
+	  int kernelNodesCount = 0;
+	  int kernelEdgesCount = 0;
+	  for (int u = 0; u < nodesCount; u++) {
+		if (state[u] == ALIVE) {
+		    kernelId[u] = kernelNodesCount++;
+		    kernelEdgesCount += compact(u);
+		}
+	  }
+	  kernelEdgesCount /= 2;
+
+	  int[] kernelNodes = new int[kernelNodesCount];
+	  double[] kernelPointX = new double[kernelNodesCount];
+	  double[] kernelPointY = new double[kernelNodesCount];
+	  int[] from = new int[kernelEdgesCount];
+	  int[] to = new int[kernelEdgesCount];
+	  int e = 0;
+	  for (int u = 0; u < nodesCount; u++) {
+		if (state[u] != ALIVE) {
+		    continue;
+		}
+		int i = kernelId[u];
+		kernelNodes[i] = u;
+		kernelPointX[i] = pointX[u];
+		kernelPointY[i] = pointY[u];
+		for (int k = 0; k < adjacencySize[u]; k++) {
+		    int v = adjacency[u][k];
+		    if (v > u) {
+			  from[e] = i;
+			  to[e] = kernelId[v];
+			  e++;
+		    }
+		}
+	  }
+
+	  boolean[] taken = new boolean[nodesCount];
+	  for (int u = 0; u < nodesCount; u++) {
+		taken[u] = state[u] == TAKEN;
+	  }
+
+	  Graph kernelGraph = new Graph(kernelPointX, kernelPointY, kernelNodesCount, from, to, kernelEdgesCount);
+	  return new Kernel(graph, kernelGraph, kernelNodes, taken, folds, looped, isolated, pendant, folded, dominated);
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map graph stored in the compressed sparse row (CSR) format.
+ *
+ * Neighbours of node <code>u</code> are stored in
+ * <code>neighbors[offsets[u]]</code> to
+ * <code>neighbors[offsets[u + 1] - 1]</code>. Every edge is stored in both
+ * directions, a self-loop only once, so iterating the neighbours <code>v</code>
+ * of every node <code>u</code> with <code>v &gt;= u</code> visits each edge
+ * exactly once. The edge list is kept as well, in the order it is given.
+ *
+ * Every way of loading a map gives the edge list in the same canonical
+ * order: each edge leads from its lower id to the higher one, and the edges
+ * are sorted by the lower id, then by the higher one, with no self-loops or
+ * duplicates. When the text files are parsed, <code>MapLoader</code> sorts
+ * the edges in <code>canonicalizeEdges</code>, which also drops the
+ * self-loops, and the duplicates by comparing neighbouring edges after the
+ * sort. <code>StreamingMapReader</code> skips the self-loops while it
+ * counts the degrees and drops the duplicates in
+ * <code>removeDuplicates</code>, from its sorted adjacency lists; it takes
+ * the edges from those lists in the same order. A <code>graph.bin</code>
+ * file stores the edges in the order they were written in.
+ *
+ * The arrays returned by the getters are the internal ones, so that the hot
+ * loops of the evolution can read them directly. They must never be modified.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class Graph {
+
+    /**
+     * Approximate size of an array header, used to estimate the memory taken
+     * by the graph.
+     */
+    private static final int ARRAY_HEADER = 16;
+
+    /**
+     * Number of nodes.
+     */
+    private final int nodesCount;
+
+    /**
+     * Number of edges.
+     */
+    private final int edgesCount;
+
+    /**
+     * X coordinates of the nodes.
+     */
+    private final double[] pointX;
+
+    /**
+     * Y coordinates of the nodes.
+     */
+    private final double[] pointY;
+
+    /**
+     * Id of the node each edge leads from.
+     */
+    private final int[] edgeFrom;
+
+    /**
+     * Id of the node each edge leads to.
+     */
+    private final int[] edgeTo;
+
+    /**
+     * Start of each node's neighbours in <code>neighbors</code>, the last
+     * entry is the total length.
+     */
+    private final int[] offsets;
+
+    /**
+     * Concatenated adjacency lists of all the nodes.
+     */
+    private final int[] neighbors;
+
+    /**
+     * Number of neighbours of each node.
+     */
+    private final int[] degree;
+
+    /**
+     * Ids of all the nodes sorted by their degree, highest first.
+     */
+    private final int[] degreeOrder;
+
+    /**
+     * For every entry in <code>neighbors</code>, 1 if the node the entry
+     * belongs to is the preferred endpoint of the edge, 0 if the neighbour is.
+     * The preferred endpoint is the one with more edges, on a tie the one with
+     * the higher id.
+     */
+    private final byte[] preferredEndpoint;
+
+    /**
+     * Id each node had in the map files, <code>null</code> if the nodes have
+     * not been renumbered.
+     */
+    private final int[] originalIds;
+
+    /**
+     * The ids the nodes had in the map files in ascending order, to be
+     * searched by <code>getInternalId</code>; <code>null</code> if the nodes
+     * have not been renumbered. A subgraph has only some of the map's ids,
+     * so a table indexed by them would take the size of the whole map.
+     */
+    private final int[] sortedOriginalIds;
+
+    /**
+     * Current id of each node in <code>sortedOriginalIds</code>.
+     */
+    private final int[] internalIds;
+
+    /**
+     * Connected component of each node, components are numbered from 0 in the
+     * order of their lowest node id.
+     */
+    private final int[] component;
+
+    /**
+     * Number of connected components.
+     */
+    private final int componentsCount;
+
+    /**
+     * Creates the graph and builds its adjacency from the edge list.
+     *
+     * @param pointX X coordinates of the nodes
+     * @param pointY Y coordinates of the nodes
+     * @param nodesCount number of nodes (only this many coordinates are used)
+     * @param edgeFrom ids of the nodes the edges lead from
+     * @param edgeTo ids of the nodes the edges lead to
+     * @param edgesCount number of edges (only this many entries are used)
+     */
+    public Graph(double[] pointX, double[] pointY, int nodesCount, int[] edgeFrom, int[] edgeTo, int edgesCount) {
+	  this(pointX, pointY, nodesCount, edgeFrom, edgeTo, edgesCount, null);
+    }
+
+    /**
+     * Creates the graph of renumbered nodes and builds its adjacency from the
+     * edge list.
+     *
+     * @param pointX X coordinates of the nodes
+     * @param pointY Y coordinates of the nodes
+     * @param nodesCount number of nodes (only this many coordinates are used)
+     * @param edgeFrom ids of the nodes the edges lead from
+     * @param edgeTo ids of the nodes the edges lead to
+     * @param edgesCount number of edges (only this many entries are used)
+     * @param originalIds id each node had in the map files, <code>null</code>
+     * if the ids are the same
+     */
+    private Graph(double[] pointX, double[] pointY, int nodesCount, int[] edgeFrom, int[] edgeTo, int edgesCount, int[] originalIds) {
+	  this(Arrays.copyOf(pointX, nodesCount), Arrays.copyOf(pointY, nodesCount),
+		    Arrays.copyOf(edgeFrom, edgesCount), Arrays.copyOf(edgeTo, edgesCount),
+		    buildAdjacency(nodesCount, edgeFrom, edgeTo, edgesCount), originalIds);
+    }
+
+    /**
+     * Creates the graph from arrays that already hold its adjacency. The
+     * arrays are taken over, not copied.
+     *
+     * @param pointX X coordinates of the nodes
+     * @param pointY Y coordinates of the nodes
+     * @param edgeFrom ids of the nodes the edges lead from
+     * @param edgeTo ids of the nodes the edges lead to
+     * @param adjacency offsets and neighbours of the CSR format
+     * @param originalIds id each node had in the map files, <code>null</code>
+     * if the ids are the same
+     */
+    private Graph(double[] pointX, double[] pointY, int[] edgeFrom, int[] edgeTo, int[][] adjacency, int[] originalIds) {
+	  this.nodesCount = pointX.length;
+	  this.edgesCount = edgeFrom.length;
+	  this.originalIds = originalIds;
+	  if (originalIds != null) {
+		// sort the pairs of ids by the original one
+		long[] pairs = new long[nodesCount];
+		for (int i = 0; i < nodesCount; i++) {
+		    pairs[i] = ((long) originalIds[i] << 32) | i;
+		}
+		Arrays.sort(pairs);
+		sortedOriginalIds = new int[nodesCount];
+		internalIds = new int[nodesCount];
+		for (int i = 0; i < nodesCount; i++) {
+		    sortedOriginalIds[i] = (int) (pairs[i] >>> 32);
+		    internalIds[i] = (int) pairs[i];
+		}
+	  } else {
+		sortedOriginalIds = null;
+		internalIds = null;
+	  }
+	  this.pointX = pointX;
+	  this.pointY = pointY;
+	  this.edgeFrom = edgeFrom;
+	  this.edgeTo = edgeTo;
+	  this.offsets = adjacency[0];
+	  this.neighbors = adjacency[1];
+
+	  degree = new int[nodesCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		degree[i] = offsets[i + 1] - offsets[i];
+	  }
+
+	  preferredEndpoint = new byte[neighbors.length];
+	  for (int u = 0; u < nodesCount; u++) {
+		for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+		    int v = neighbors[k];
+		    if (degree[u] > degree[v] || (degree[u] == degree[v] && u > v)) {
+			  preferredEndpoint[k] = 1;
+		    }
+		}
+	  }
+
+	  // counting sort of the nodes by degree, highest first
+	  int maxDegree = 0;
+	  for (int i = 0; i < nodesCount; i++) {
+		maxDegree = Math.max(maxDegree, degree[i]);
+	  }
+	  int[] start = new int[maxDegree + 2];
+	  for (int i = 0; i < nodesCount; i++) {
+		start[maxDegree - degree[i] + 1]++;
+	  }
+	  for (int d = 1; d < start.length; d++) {
+		start[d] += start[d - 1];
+	  }
+	  degreeOrder = new int[nodesCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		degreeOrder[start[maxDegree - degree[i]]++] = i;
+	  }
+
+	  // union-find over the edges, with path halving and union by size
+	  int[] parent = new int[nodesCount];
+	  int[] size = new int[nodesCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		parent[i] = i;
+		size[i] = 1;
+	  }
+	  for (int e = 0; e < edgesCount; e++) {
+		int a = findRoot(parent, this.edgeFrom[e]);
+		int b = findRoot(parent, this.edgeTo[e]);
+		if (a != b) {
+		    if (size[a] < size[b]) {
+			  int tmp = a;
+			  a = b;
+			  b = tmp;
+		    }
+		    parent[b] = a;
+		    size[a] += size[b];
+		}
+	  }
+	  // reuse size[] for the component number of each root
+	  component = new int[nodesCount];
+	  Arrays.fill(size, -1);
+	  int count = 0;
+	  for (int i = 0; i < nodesCount; i++) {
+		int root = findRoot(parent, i);
+		if (size[root] < 0) {
+		    size[root] = count++;
+		}
+		component[i] = size[root];
+	  }
+	  componentsCount = count;
+    }
+
+    /**
+     * Creates the graph from arrays that already hold its adjacency in the CSR
+     * format, as they are stored in a binary map file. The arrays are taken
+     * over, not copied, and have to describe the same edges.
+     *
+     * @param pointX X coordinates of the nodes
+     * @param pointY Y coordinates of the nodes
+     * @param edgeFrom ids of the nodes the edges lead from
+     * @param edgeTo ids of the nodes the edges lead to
+     * @param offsets start of each node's neighbours, one more entry than
+     * there are nodes
+     * @param neighbors concatenated adjacency lists of all the nodes
+     * @return the graph
+     */
+    public static Graph fromAdjacency(double[] pointX, double[] pointY, int[] edgeFrom, int[] edgeTo, int[] offsets, int[] neighbors) {
+	  if (pointY.length != pointX.length || edgeTo.length != edgeFrom.length
+		    || offsets.length != pointX.length + 1 || offsets[pointX.length] != neighbors.length) {
+		throw new IllegalArgumentException("Inconsistent graph arrays");
+	  }
+	  return new Graph(pointX, pointY, edgeFrom, edgeTo, new int[][]{offsets, neighbors}, null);
+    }
+
+    /**
+     * Builds the adjacency lists from the edge list.
+     *
+     * @param nodesCount number of nodes
+     * @param edgeFrom ids of the nodes the edges lead from
+     * @param edgeTo ids of the nodes the edges lead to
+     * @param edgesCount number of edges (only this many entries are used)
+     * @return offsets and neighbours of the CSR format
+     */
+    private static int[][] buildAdjacency(int nodesCount, int[] edgeFrom, int[] edgeTo, int edgesCount) {
+	  // count the neighbours of each node
+	  int[] offsets = new int[nodesCount + 1];
+	  for (int e = 0; e < edgesCount; e++) {
+		offsets[edgeFrom[e] + 1]++;
+		if (edgeFrom[e] != edgeTo[e]) {
+		    offsets[edgeTo[e] + 1]++;
+		}
+	  }
+	  for (int i = 0; i < nodesCount; i++) {
+		offsets[i + 1] += offsets[i];
+	  }
+
+	  // scatter the edges into the adjacency lists
+	  int[] neighbors = new int[offsets[nodesCount]];
+	  int[] fill = Arrays.copyOf(offsets, nodesCount);
+	  for (int e = 0; e < edgesCount; e++) {
+		int from = edgeFrom[e];
+		int to = edgeTo[e];
+		neighbors[fill[from]++] = to;
+		if (from != to) {
+		    neighbors[fill[to]++] = from;
+		}
+	  }
+	  return new int[][]{offsets, neighbors};
+    }
+
+    /**
+     * Finds the representative of a node's set in the union-find forest,
+     * halving the path on the way.
+     *
+     * @param parent parent of every node in the forest
+     * @param i the node
+     * @return root of the node's tree
+     */
+    private static int findRoot(int[] parent, int i) {
+	  while (parent[i] != i) {
+		parent[i] = parent[parent[i]];
+		i = parent[i];
+	  }
+	  return i;
+    }
+
+    /**
+     * Gets the total number of nodes.
+     *
+     * @return The number of nodes
+     */
+    public int nodesCount() {
+	  return nodesCount;
+    }
+
+    /**
+     * Gets the total number of edges.
+     *
+     * @return The number of edges
+     */
+    public int edgesCount() {
+	  return edgesCount;
+    }
+
+    /**
+     * Gets the X coordinate of a node.
+     *
+     * @param id Id of the node
+     * @return the X coordinate
+     */
+    public double getPointX(int id) {
+	  return pointX[id];
+    }
+
+    /**
+     * Gets the Y coordinate of a node.
+     *
+     * @param id Id of the node
+     * @return the Y coordinate
+     */
+    public double getPointY(int id) {
+	  return pointY[id];
+    }
+
+    /**
+     * Gets the id of the node the edge at given index leads from.
+     *
+     * @param idx Index of the edge, counting from 0 to |Edges|-1
+     * @return Id of the source node
+     */
+    public int getEdgeFrom(int idx) {
+	  return edgeFrom[idx];
+    }
+
+    /**
+     * Gets the id of the node the edge at given index leads to.
+     *
+     * @param idx Index of the edge, counting from 0 to |Edges|-1
+     * @return Id of the destination node
+     */
+    public int getEdgeTo(int idx) {
+	  return edgeTo[idx];
+    }
+
+    /**
+     * Gets the id the node had in the map files, before the nodes were
+     * renumbered. Use this whenever a solution leaves the program.
+     *
+     * @param id current id of the node
+     * @return id of the node in the map files
+     */
+    public int getOriginalId(int id) {
+	  return originalIds == null ? id : originalIds[id];
+    }
+
+    /**
+     * Gets the current id of a node from the id it had in the map files.
+     *
+     * @param originalId id of the node in the map files
+     * @return current id of the node, -1 if the node is not in this graph
+     */
+    public int getInternalId(int originalId) {
+	  if (sortedOriginalIds == null) {
+		return originalId;
+	  }
+	  int i = Arrays.binarySearch(sortedOriginalIds, originalId);
+	  return i >= 0 ? internalIds[i] : -1;
+    }
+
+    /**
+     * Estimates the memory taken by the graph, counting its arrays with their
+     * headers.
+     *
+     * @return approximate size of the graph in bytes
+     */
+    public long sizeInBytes() {
+	  long size = 0;
+	  for (double[] array : new double[][]{pointX, pointY}) {
+		size += ARRAY_HEADER + 8L * array.length;
+	  }
+	  for (int[] array : new int[][]{edgeFrom, edgeTo, offsets, neighbors, degree, degreeOrder, component, originalIds, sortedOriginalIds, internalIds}) {
+		if (array != null) {
+		    size += ARRAY_HEADER + 4L * array.length;
+		}
+	  }
+	  return size + ARRAY_HEADER + preferredEndpoint.length;
+    }
+
+    /**
+     * Creates a copy of the graph with its nodes renumbered, so that node
+     * <code>order[i]</code> gets id <code>i</code>. Coordinates move with the
+     * nodes and the new graph remembers the original ids.
+     *
+     * @param order permutation of the current node ids
+     * @return the renumbered graph
+     */
+    public Graph relabel(int[] order) {
+	  int[] newId = new int[nodesCount];
+	  int[] newOriginalIds = new int[nodesCount];
+	  double[] newPointX = new double[nodesCount];
+	  double[] newPointY = new double[nodesCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		newId[order[i]] = i;
+		newOriginalIds[i] = getOriginalId(order[i]);
+		newPointX[i] = pointX[order[i]];
+		newPointY[i] = pointY[order[i]];
+	  }
+	  int[] newFrom = new int[edgesCount];
+	  int[] newTo = new int[edgesCount];
+	  for (int e = 0; e < edgesCount; e++) {
+		newFrom[e] = newId[edgeFrom[e]];
+		newTo[e] = newId[edgeTo[e]];
+	  }
+	  return new Graph(newPointX, newPointY, nodesCount, newFrom, newTo, edgesCount, newOriginalIds);
+    }
+
+    /**
+     * Gets the number of connected components of the graph. A node without
+     * edges is a component of its own.
+     *
+     * @return number of components
+     */
+    public int componentsCount() {
+	  return componentsCount;
+    }
+
+    /**
+     * Gets the connected component a node belongs to.
+     *
+     * @param id Id of the node
+     * @return number of the component, from 0 to componentsCount()-1
+     */
+    public int getComponent(int id) {
+	  return component[id];
+    }
+
+    /**
+     * Lists the nodes of every connected component.
+     *
+     * @return for every component, ids of its nodes in ascending order
+     */
+    public int[][] getComponentNodes() {
+	  int[] sizes = new int[componentsCount];
+	  for (int i = 0; i < nodesCount; i++) {
+		sizes[component[i]]++;
+	  }
+	  int[][] nodes = new int[componentsCount][];
+	  for (int c = 0; c < componentsCount; c++) {
+		nodes[c] = new int[sizes[c]];
+	  }
+	  Arrays.fill(sizes, 0);
+	  for (int i = 0; i < nodesCount; i++) {
+		nodes[component[i]][sizes[component[i]]++] = i;
+	  }
+	  return nodes;
+    }
+
+    /**
+     * Creates the subgraph induced by the given nodes. Node
+     * <code>nodes[i]</code> gets id <code>i</code> in the subgraph, so the ids
+     * keep their order and the subgraph's nodes have the same preferred edge
+     * endpoints as long as whole components are taken.
+     *
+     * @param nodes ids of the nodes in ascending order
+     * @return the induced subgraph
+     */
+    public Graph inducedSubgraph(int[] nodes) {
+	  double[] subPointX = new double[nodes.length];
+	  double[] subPointY = new double[nodes.length];
+	  int[] subOriginalIds = new int[nodes.length];
+	  int subEdgesCount = 0;
+	  for (int i = 0; i < nodes.length; i++) {
+		subPointX[i] = pointX[nodes[i]];
+		subPointY[i] = pointY[nodes[i]];
+		subOriginalIds[i] = getOriginalId(nodes[i]);
+		subEdgesCount += degree[nodes[i]];
+	  }
+	  int[] subFrom = new int[subEdgesCount];
+	  int[] subTo = new int[subEdgesCount];
+	  subEdgesCount = 0;
+	  for (int i = 0; i < nodes.length; i++) {
+		int u = nodes[i];
+		for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+		    int j = neighbors[k] >= u ? Arrays.binarySearch(nodes, i, nodes.length, neighbors[k]) : -1;
+		    if (j >= 0) {
+			  subFrom[subEdgesCount] = i;
+			  subTo[subEdgesCount] = j;
+			  subEdgesCount++;
+		    }
+		}
+	  }
+	  return new Graph(subPointX, subPointY, nodes.length, subFrom, subTo, subEdgesCount, subOriginalIds);
+    }
+
+    /**
+     * Gets the number of neighbours of a node.
+     *
+     * @param id Id of the node
+     * @return degree of the node
+     */
+    public int getDegree(int id) {
+	  return degree[id];
+    }
+
+    /**
+     * Gets the internal array of node degrees.
+     *
+     * @return degree of every node, must not be modified
+     */
+    public int[] getDegrees() {
+	  return degree;
+    }
+
+    /**
+     * Gets the internal array of node ids sorted by degree, highest first.
+     * Nodes with the same degree are sorted by id.
+     *
+     * @return node ids sorted by degree, must not be modified
+     */
+    public int[] getDegreeOrder() {
+	  return degreeOrder;
+    }
+
+    /**
+     * Gets the internal array marking the preferred endpoint of every edge in
+     * the adjacency lists. Entry <code>k</code> is 1 if the node whose list
+     * contains position <code>k</code> should be turned on to cover the edge,
+     * 0 if its neighbour <code>neighbors[k]</code> should.
+     *
+     * @return preferred endpoints aligned with <code>getNeighbors</code>, must
+     * not be modified
+     */
+    public byte[] getPreferredEndpoints() {
+	  return preferredEndpoint;
+    }
+
+    /**
+     * Gets the internal array of adjacency list offsets.
+     *
+     * @return offsets of every node's neighbours, must not be modified
+     */
+    public int[] getOffsets() {
+	  return offsets;
+    }
+
+    /**
+     * Gets the internal array of concatenated adjacency lists.
+     *
+     * @return neighbours of all the nodes, must not be modified
+     */
+    public int[] getNeighbors() {
+	  return neighbors;
+    }
+
+    /**
+     * Creates a view of a node. The view is not cached, so avoid calling this
+     * in loops that run often.
+     *
+     * @param id Id of the node
+     * @return new <code>Node</code> backed by this graph
+     */
+    public Node getNode(int id) {
+	  return new Node(this, id);
+    }
+
+    /**
+     * Creates a view of an edge. The view is not cached, so avoid calling this
+     * in loops that run often.
+     *
+     * @param idx Index of the edge, counting from 0 to |Edges|-1
+     * @return new <code>Edge</code> with the ids of the edge's nodes
+     */
+    public Edge getEdge(int idx) {
+	  return new Edge(edgeFrom[idx], edgeTo[idx]);
+    }
+}
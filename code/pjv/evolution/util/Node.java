@@ -28,16 +28,17 @@ import java.util.List;
 
 /**
  * Class representing one Node. Contains coordinates of the node and the node's
- * id.
+ * id. When created by a <code>Graph</code>, the node is only a thin view of the
+ * graph and its edges are read from the graph's adjacency on demand.
  *
  * @author Jan Havlůj {@literal <jan@havluj.eu>}
  */
 public class Node {
 
     /**
-     * List of edges coming out of this node.
+     * Graph the node belongs to, <code>null</code> for a standalone node.
      */
-    protected List<Edge> edge = new ArrayList<>();
+    private final Graph graph;
 
     /**
      * Id of the node.
@@ -55,34 +56,49 @@ public class Node {
     private final double pointY;
 
     /**
-     * Creates the node.
+     * Creates a standalone node without any edges.
      *
      * @param id Id of the node.
      * @param pointX Coordinate X.
      * @param pointY Coordinate Y.
      */
     public Node(int id, double pointX, double pointY) {
+	  this.graph = null;
 	  this.id = id;
 	  this.pointX = pointX;
 	  this.pointY = pointY;
     }
 
     /**
-     * Add a new edge coming from this node to the list.
+     * Creates a view of a node in the graph.
      *
-     * @param e new edge that will be added to the list
+     * @param graph graph the node belongs to
+     * @param id Id of the node.
      */
-    public void addEdge(Edge e) {
-	  edge.add(e);
+    public Node(Graph graph, int id) {
+	  this.graph = graph;
+	  this.id = id;
+	  this.pointX = graph.getPointX(id);
+	  this.pointY = graph.getPointY(id);
     }
 
     /**
-     * Gets a list of edges coming out of this node.
+     * Gets a list of edges coming out of this node. The list is built from the
+     * graph's adjacency every time this is called.
      *
      * @return list of all the edges coming out of this node
      */
     public List<Edge> getEdges() {
-	  return this.edge;
+	  if (graph == null) {
+		return new ArrayList<>();
+	  }
+	  int[] offsets = graph.getOffsets();
+	  int[] neighbors = graph.getNeighbors();
+	  List<Edge> edges = new ArrayList<>(offsets[id + 1] - offsets[id]);
+	  for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+		edges.add(new Edge(id, neighbors[k]));
+	  }
+	  return edges;
     }
 
     /**
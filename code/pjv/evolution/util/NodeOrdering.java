@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.util;
+
+import java.util.Arrays;
+
+/**
+ * Node numbering applied to a map after it has been loaded. Nodes that are
+ * close to each other in the map should get close ids, so that the genes of
+ * neighbouring nodes share cache lines when the edges are scanned.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public enum NodeOrdering {
+
+    /**
+     * Keep the order of the map files.
+     */
+    NONE {
+	  @Override
+	  public int[] order(Graph graph) {
+		int[] order = new int[graph.nodesCount()];
+		for (int i = 0; i < order.length; i++) {
+		    order[i] = i;
+		}
+		return order;
+	  }
+    },
+    /**
+     * Reverse Cuthill-McKee: breadth-first search from a node with the lowest
+     * degree, visiting neighbours with fewer edges first, reversed.
+     */
+    RCM {
+	  @Override
+	  public int[] order(Graph graph) {
+		int n = graph.nodesCount();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		int[] degree = graph.getDegrees();
+		int[] degreeOrder = graph.getDegreeOrder();
+
+		int[] order = new int[n];
+		boolean[] visited = new boolean[n];
+		int head = 0;
+		int tail = 0;
+		// start every component from its node with the lowest degree
+		for (int s = n - 1; s >= 0; s--) {
+		    int start = degreeOrder[s];
+		    if (visited[start]) {
+			  continue;
+		    }
+		    visited[start] = true;
+		    order[tail++] = start;
+		    while (head < tail) {
+			  int u = order[head++];
+			  int first = tail;
+			  for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+				int v = neighbors[k];
+				if (!visited[v]) {
+				    visited[v] = true;
+				    order[tail++] = v;
+				}
+			  }
+			  // insertion sort of the new nodes by degree, lists are short
+			  for (int i = first + 1; i < tail; i++) {
+				int node = order[i];
+				int j = i - 1;
+				while (j >= first && degree[order[j]] > degree[node]) {
+				    order[j + 1] = order[j];
+				    j--;
+				}
+				order[j + 1] = node;
+			  }
+		    }
+		}
+
+		for (int i = 0; i < n / 2; i++) {
+		    int tmp = order[i];
+		    order[i] = order[n - 1 - i];
+		    order[n - 1 - i] = tmp;
+		}
+		return order;
+	  }
+    },
+    /**
+     * Order of the nodes along a Hilbert curve laid over the map coordinates.
+     */
+    HILBERT {
+	  @Override
+	  public int[] order(Graph graph) {
+		int n = graph.nodesCount();
+		if (n == 0) {
+		    return new int[0];
+		}
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+		    minX = Math.min(minX, graph.getPointX(i));
+		    minY = Math.min(minY, graph.getPointY(i));
+		    maxX = Math.max(maxX, graph.getPointX(i));
+		    maxY = Math.max(maxY, graph.getPointY(i));
+		}
+		double scale = (HILBERT_SIDE - 1) / Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL);
+
+		// sort by the curve index, the node id is packed in the low bits
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+		    int x = (int) ((graph.getPointX(i) - minX) * scale);
+		    int y = (int) ((graph.getPointY(i) - minY) * scale);
+		    keys[i] = (hilbertIndex(x, y) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+		    order[i] = (int) keys[i];
+		}
+		return order;
+	  }
+    };
+
+    /**
+     * Number of cells along one side of the Hilbert curve grid.
+     */
+    private static final int HILBERT_SIDE = 1 << 15;
+
+    /**
+     * Computes the new order of the nodes.
+     *
+     * @param graph the graph to renumber
+     * @return permutation of node ids, node <code>order[i]</code> should get
+     * id <code>i</code>
+     */
+    public abstract int[] order(Graph graph);
+
+    /**
+     * Renumbers the nodes of the graph.
+     *
+     * @param graph the graph to renumber
+     * @return the renumbered graph, or the same graph for <code>NONE</code>
+     */
+    public Graph apply(Graph graph) {
+	  if (this == NONE) {
+		return graph;
+	  }
+	  return graph.relabel(order(graph));
+    }
+
+    /**
+     * Computes the distance of a cell along the Hilbert curve.
+     *
+     * @param x column of the cell
+     * @param y row of the cell
+     * @return index of the cell on the curve
+     */
+    private static long hilbertIndex(int x, int y) {
+	  long d = 0;
+	  for (int s = HILBERT_SIDE / 2; s > 0; s /= 2) {
+		int rx = (x & s) > 0 ? 1 : 0;
+		int ry = (y & s) > 0 ? 1 : 0;
+		d += (long) s * s * ((3 * rx) ^ ry);
+		// rotate the quadrant
+		if (ry == 0) {
+		    if (rx == 1) {
+			  x = HILBERT_SIDE - 1 - x;
+			  y = HILBERT_SIDE - 1 - y;
+		    }
+		    int t = x;
+		    x = y;
+		    y = t;
+		}
+	  }
+	  return d;
+    }
+}
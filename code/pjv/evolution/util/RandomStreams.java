@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Jan Havlůj.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice, this permission notice and the original author's 
+ * name shall be included in all copies or substantial portions of the Software. 
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package pjv.evolution.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Source of the random numbers of a run, derived from a single master seed.
+ * Every worker gets a stream of its own by its index, so the streams do not
+ * depend on which thread asks first, and the same seed always gives the same
+ * numbers. A worker splits its stream further for the individuals it
+ * creates.
+ *
+ * The streams are <code>SplittableRandom</code>, which is not thread-safe
+ * and must not be shared by the threads; that is the point, nothing is
+ * contended.
+ *
+ * @author Jan Havlůj {@literal <jan@havluj.eu>}
+ */
+public final class RandomStreams {
+
+    /**
+     * The master seed.
+     */
+    private final long seed;
+
+    /**
+     * Creates the streams of a run.
+     *
+     * @param seed the master seed
+     */
+    public RandomStreams(long seed) {
+	  this.seed = seed;
+    }
+
+    /**
+     * Picks a master seed for a run that has not been given one.
+     *
+     * @return a seed that differs from run to run
+     */
+    public static long newSeed() {
+	  return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Gets the master seed, to be recorded so that the run can be repeated.
+     *
+     * @return the master seed
+     */
+    public long getSeed() {
+	  return seed;
+    }
+
+    /**
+     * Gets the stream of a worker. Asking twice for the same index gives two
+     * streams with the same numbers.
+     *
+     * @param index index of the worker
+     * @return a new stream of the worker
+     */
+    public SplittableRandom stream(int index) {
+	  // the golden ratio gamma and the mix function of SplittableRandom,
+	  // so that neighbouring indices give unrelated seeds
+	  long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+	  z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	  z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	  return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    @Override
+    public String toString() {
+	  return "seed: " + seed;
+    }
+}
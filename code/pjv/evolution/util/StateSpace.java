@@ -28,58 +28,78 @@ import java.util.List;
 
 /**
  * State space class providing access to all the Nodes and Edges present in the
- * map.
+ * map. The map itself is held in a CSR <code>Graph</code>, the nodes and edges
+ * returned here are only views created on demand.
+ *
+ * This is only a compatibility facade holding the most recently loaded map.
+ * The evolution works with the <code>Graph</code> it has been given, so any
+ * number of maps can be loaded and solved at the same time.
  *
  * @author Jan Havlůj {@literal <jan@havluj.eu>} (original by Tomas Barton)
  */
 public class StateSpace {
 
     /**
-     * Static list of all nodes for the evolution representing one map.
-     */
-    private static List<Node> nodes;
-
-    /**
-     * Static list of all edges for the evolution representing one map.
+     * Graph of the map the evolution runs on.
      */
-    private static List<Edge> edges = new ArrayList<>();
+    private static volatile Graph graph;
 
     /**
-     * Fill the nodes and edges lists.
+     * Build the graph from the lists of nodes and edges. Nodes are indexed by
+     * their position in the list.
      *
      * @param n list of nodes
      * @param e list of edges
      */
     public static void setStateSpace(List<Node> n, List<Edge> e) {
-	  nodes = n;
-	  edges = e;
+	  double[] pointX = new double[n.size()];
+	  double[] pointY = new double[n.size()];
+	  for (int i = 0; i < n.size(); i++) {
+		pointX[i] = n.get(i).getPointX();
+		pointY[i] = n.get(i).getPointY();
+	  }
+	  int[] from = new int[e.size()];
+	  int[] to = new int[e.size()];
+	  for (int i = 0; i < e.size(); i++) {
+		from[i] = e.get(i).getFromId();
+		to[i] = e.get(i).getToId();
+	  }
+	  graph = new Graph(pointX, pointY, n.size(), from, to, e.size());
+    }
 
-	  // add edges to each node
-	  edges.stream().forEach((edge) -> {
-		nodes.get(edge.fromId).addEdge(edge);
-	  });
+    /**
+     * Set the graph of the map.
+     *
+     * @param g the new graph
+     */
+    public static void setGraph(Graph g) {
+	  graph = g;
     }
 
     /**
-     * Clear the lists of nodes and edges.
+     * Gets the graph of the map.
+     *
+     * @return the graph, <code>null</code> if no map is loaded
+     */
+    public static Graph getGraph() {
+	  return graph;
+    }
+
+    /**
+     * Forget the loaded map.
      */
     public static void clear() {
-	  if (nodes != null && !nodes.isEmpty()) {
-		nodes.clear();
-	  }
-	  if (!edges.isEmpty()) {
-		edges.clear();
-	  }
+	  graph = null;
     }
 
     /**
-     * Gets the total number of edges on the map.
+     * Gets the total number of nodes on the map.
      *
      * @return The number of nodes
      */
     public static int nodesCount() {
-	  if (nodes != null) {
-		return nodes.size();
+	  if (graph != null) {
+		return graph.nodesCount();
 	  }
 	  return 0;
     }
@@ -90,24 +110,35 @@ public class StateSpace {
      * @return The number of edges
      */
     public static int edgesCount() {
-	  return edges.size();
+	  if (graph != null) {
+		return graph.edgesCount();
+	  }
+	  return 0;
     }
 
     /**
-     * Gets a reference to the list of all nodes.
+     * Creates a list of views of all nodes.
      *
      * @return The list of all nodes
      */
     public static List<Node> getNodes() {
+	  List<Node> nodes = new ArrayList<>(nodesCount());
+	  for (int i = 0; i < nodesCount(); i++) {
+		nodes.add(graph.getNode(i));
+	  }
 	  return nodes;
     }
 
     /**
-     * Gets a reference to a list of all edges.
+     * Creates a list of views of all edges.
      *
      * @return The list of all edges
      */
     public static List<Edge> getEdges() {
+	  List<Edge> edges = new ArrayList<>(edgesCount());
+	  for (int i = 0; i < edgesCount(); i++) {
+		edges.add(graph.getEdge(i));
+	  }
 	  return edges;
     }
 
@@ -118,7 +149,7 @@ public class StateSpace {
      * @return The Node object at the index given
      */
     public static Node getNode(int idx) {
-	  return nodes.get(idx);
+	  return graph.getNode(idx);
     }
 
     /**
@@ -128,6 +159,6 @@ public class StateSpace {
      * @return The Edge object at the index given
      */
     public static Edge getEdge(int idx) {
-	  return edges.get(idx);
+	  return graph.getEdge(idx);
     }
 }